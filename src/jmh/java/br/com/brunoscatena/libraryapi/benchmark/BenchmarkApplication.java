@@ -0,0 +1,30 @@
+package br.com.brunoscatena.libraryapi.benchmark;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * Boots only the persistence layer (H2, JPA and repositories), without the web
+ * layer, so the benchmarks measure services and repositories in isolation.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@EntityScan("br.com.brunoscatena.libraryapi.model.entity")
+@EnableJpaRepositories("br.com.brunoscatena.libraryapi.model.repository")
+public class BenchmarkApplication {
+
+    public static ConfigurableApplicationContext start(String database) {
+	return new SpringApplicationBuilder(BenchmarkApplication.class)
+		.web(WebApplicationType.NONE)
+		.properties("spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+			"spring.jpa.open-in-view=false",
+			"logging.level.root=WARN")
+		.run();
+    }
+
+}
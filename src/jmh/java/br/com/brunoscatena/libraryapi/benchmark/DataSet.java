@@ -0,0 +1,73 @@
+package br.com.brunoscatena.libraryapi.benchmark;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Seeds customers, books and loans straight through JDBC batches. Loans are
+ * spread over {@value #CUSTOMERS} customers and every book gets one loan
+ * and every other loan is still open, so half of the catalog is available.
+ * Due dates are spread over four weeks around today, so about half of the open
+ * loans are overdue.
+ */
+public final class DataSet {
+
+    public static final int CUSTOMERS = 1000;
+    private static final int BATCH_SIZE = 5000;
+
+    private DataSet() {
+    }
+
+    public static String isbn(long id) {
+	return "isbn-" + id;
+    }
+
+    public static String title(long id) {
+	return "Title " + id;
+    }
+
+    public static String customer(long id) {
+	return "Customer " + (id % CUSTOMERS);
+    }
+
+    public static long customerId(long id) {
+	return id % CUSTOMERS + 1;
+    }
+
+    public static void seed(JdbcTemplate jdbcTemplate, int size) {
+	List<Object[]> books = new ArrayList<>(BATCH_SIZE);
+	List<Object[]> loans = new ArrayList<>(BATCH_SIZE);
+	Date today = Date.valueOf(LocalDate.now());
+
+	List<Object[]> customers = new ArrayList<>(CUSTOMERS);
+	for (long id = 0; id < CUSTOMERS; id++) {
+	    customers.add(new Object[] { customerId(id), customer(id) });
+	}
+	jdbcTemplate.batchUpdate("INSERT INTO customer (id, name) VALUES (?, ?)", customers);
+
+	for (long id = 1; id <= size; id++) {
+	    books.add(new Object[] { id, title(id), "Author " + (id % 5000), isbn(id), id % 2 != 0 });
+	    loans.add(new Object[] { id, customerId(id), id, today,
+		    Date.valueOf(LocalDate.now().plusDays(14 - id % 28)), id % 2 == 0 });
+
+	    if (books.size() == BATCH_SIZE || id == size) {
+		jdbcTemplate.batchUpdate("INSERT INTO book (id, title, author, isbn, loaned) VALUES (?, ?, ?, ?, ?)",
+			books);
+		jdbcTemplate.batchUpdate("INSERT INTO loan (id, customer_id, book_id, loan_date, "
+			+ "due_date, returned) VALUES (?, ?, ?, ?, ?, ?)", loans);
+		books.clear();
+		loans.clear();
+	    }
+	}
+
+	// ids come from the pooled sequences, whose values are the top of each block
+	jdbcTemplate.execute("ALTER SEQUENCE book_seq RESTART WITH " + (size + 50));
+	jdbcTemplate.execute("ALTER SEQUENCE loan_seq RESTART WITH " + (size + 50));
+	jdbcTemplate.execute("ALTER TABLE customer ALTER COLUMN id RESTART WITH " + (CUSTOMERS + 1));
+    }
+
+}
@@ -0,0 +1,132 @@
+package br.com.brunoscatena.libraryapi.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.protobuf.CodedOutputStream;
+
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.api.protobuf.LibraryProtobuf;
+
+/**
+ * Encode time of one page of loans, each with its book, in every format the
+ * loan endpoint serves, and JSON gzipped as server.compression sends it. The
+ * bytes on the wire for each format are printed at setup. Run with
+ * {@code -prof gc} to compare the allocation of each encoder as well:
+ *
+ * <pre>
+ * ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="EncodingBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EncodingBenchmark {
+
+    @Param({ "20", "100" })
+    private int pageSize;
+
+    private Page<LoanDTO> page;
+
+    private ObjectMapper json;
+    private ObjectMapper smile;
+    private ObjectMapper cbor;
+
+    private ByteArrayOutputStream buffer;
+
+    @Setup
+    public void setUp() throws IOException {
+	json = Jackson2ObjectMapperBuilder.json().build();
+	smile = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+	cbor = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+	buffer = new ByteArrayOutputStream(64 * 1024);
+
+	List<LoanDTO> loans = new ArrayList<>(pageSize);
+	for (long id = 1; id <= pageSize; id++) {
+	    loans.add(LoanDTO.builder()
+		    .id(id)
+		    .isbn(DataSet.isbn(id))
+		    .customer(DataSet.customer(id))
+		    .book(BookDTO.builder()
+			    .id(id)
+			    .title(DataSet.title(id))
+			    .author("Author " + id)
+			    .isbn(DataSet.isbn(id))
+			    .loaned(true)
+			    .version(0L)
+			    .build())
+		    .dueDate(LocalDate.now().plusDays(id % 28))
+		    .version(0L)
+		    .build());
+	}
+	page = new PageImpl<LoanDTO>(loans, PageRequest.of(0, pageSize), 10 * pageSize);
+
+	System.out.println("bytes per page of " + pageSize + ": json=" + json() + ", jsonGzip="
+		+ jsonGzip() + ", smile=" + smile() + ", cbor=" + cbor() + ", protobuf="
+		+ protobuf());
+    }
+
+    @Benchmark
+    public int json() throws IOException {
+	buffer.reset();
+	json.writeValue(buffer, page);
+	return buffer.size();
+    }
+
+    @Benchmark
+    public int jsonGzip() throws IOException {
+	buffer.reset();
+	try (OutputStream out = new GZIPOutputStream(buffer)) {
+	    json.writeValue(out, page);
+	}
+	return buffer.size();
+    }
+
+    @Benchmark
+    public int smile() throws IOException {
+	buffer.reset();
+	smile.writeValue(buffer, page);
+	return buffer.size();
+    }
+
+    @Benchmark
+    public int cbor() throws IOException {
+	buffer.reset();
+	cbor.writeValue(buffer, page);
+	return buffer.size();
+    }
+
+    @Benchmark
+    public int protobuf() throws IOException {
+	buffer.reset();
+	CodedOutputStream out = CodedOutputStream.newInstance(buffer);
+	LibraryProtobuf.LOAN.page(page.getContent(), page.getNumber(), page.getSize(),
+		page.getTotalElements(), page.hasNext(), null).writeTo(out);
+	out.flush();
+	return buffer.size();
+    }
+
+}
@@ -0,0 +1,79 @@
+package br.com.brunoscatena.libraryapi.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Cost of the lookups on the create paths with and without the indexes from
+ * the V2 migration. With indexed=false the unique constraint, the loan indexes
+ * and the foreign key (which brings its own index) are dropped after seeding.
+ * The queries are the existence checks the create paths made before the
+ * constraints took them over, run here as plain SQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IndexLookupBenchmark {
+
+    @Param({ "1000000" })
+    private int size;
+
+    @Param({ "true", "false" })
+    private boolean indexed;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	context = BenchmarkApplication.start("index-" + size + "-" + indexed);
+
+	jdbcTemplate = context.getBean(JdbcTemplate.class);
+	DataSet.seed(jdbcTemplate, size);
+
+	if (!indexed) {
+	    jdbcTemplate.execute("ALTER TABLE book DROP CONSTRAINT uk_book_isbn");
+	    jdbcTemplate.execute("ALTER TABLE loan DROP CONSTRAINT fk_loan_book");
+	    jdbcTemplate.execute("DROP INDEX idx_loan_book_returned");
+	    jdbcTemplate.execute("ALTER TABLE loan DROP CONSTRAINT fk_loan_customer");
+	    jdbcTemplate.execute("DROP INDEX idx_loan_customer_id");
+	}
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	context.close();
+    }
+
+    private long randomId() {
+	return ThreadLocalRandom.current().nextLong(1, size + 1);
+    }
+
+    @Benchmark
+    public boolean existsByIsbn() {
+	return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book WHERE isbn = ?", Long.class,
+		DataSet.isbn(randomId())) > 0;
+    }
+
+    @Benchmark
+    public boolean existsByBookIdAndNotReturned() {
+	return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM loan WHERE book_id = ? "
+		+ "AND ( returned IS NULL OR returned = FALSE )", Long.class, randomId()) > 0;
+    }
+
+}
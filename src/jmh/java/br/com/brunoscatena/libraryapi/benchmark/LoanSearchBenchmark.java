@@ -0,0 +1,138 @@
+package br.com.brunoscatena.libraryapi.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanFilterDTO;
+import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
+import br.com.brunoscatena.libraryapi.model.repository.CustomerRepository;
+import br.com.brunoscatena.libraryapi.model.repository.LoanRepository;
+import br.com.brunoscatena.libraryapi.service.LoanService;
+import br.com.brunoscatena.libraryapi.service.impl.LoanServiceImpl;
+
+/**
+ * The loan search by isbn, by customer and by both, split per indexed key as
+ * LoanServiceImpl runs it, against the single OR query it replaced, here
+ * across the customer join. The customer name keeps its unique index, so the
+ * comparison is with the OR plan at its best. Both plans are printed at setup:
+ *
+ * <pre>
+ * ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="LoanSearchBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LoanSearchBenchmark {
+
+    // @formatter:off
+    private static final String OR_SEARCH =
+		    "SELECT new br.com.brunoscatena.libraryapi.api.dto.LoanDTO("
+	    	+        "l.id, c.name, l.dueDate, l.returnDate, l.version, "
+	    	+        "b.id, b.title, b.author, b.isbn, b.loaned, b.version) "
+	    	+    "FROM Loan l "
+	    	+    "JOIN l.book b "
+	    	+    "LEFT JOIN l.customer c "
+	    	+    "WHERE b.isbn = :isbn OR c.name = :customer "
+	    	+    "ORDER BY l.id";
+    // @formatter:on
+
+    @Param({ "1000000" })
+    private int size;
+
+    private ConfigurableApplicationContext context;
+    private EntityManagerFactory entityManagerFactory;
+    private LoanService loanService;
+    private Pageable pageRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	context = BenchmarkApplication.start("loan-search-" + size);
+
+	JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+	DataSet.seed(jdbcTemplate, size);
+	printPlan(jdbcTemplate, "OR search", "SELECT l.* FROM loan l JOIN book b ON b.id = l.book_id "
+		+ "LEFT JOIN customer c ON c.id = l.customer_id "
+		+ "WHERE b.isbn = 'isbn-1' OR c.name = 'Customer 1' ORDER BY l.id LIMIT 20");
+	printPlan(jdbcTemplate, "by customer", "SELECT l.* FROM loan l JOIN book b ON b.id = l.book_id "
+		+ "WHERE l.customer_id = 2 ORDER BY l.id LIMIT 20");
+	printPlan(jdbcTemplate, "by book", "SELECT l.* FROM loan l JOIN book b ON b.id = l.book_id "
+		+ "WHERE l.book_id = 1 ORDER BY l.id LIMIT 20");
+
+	entityManagerFactory = context.getBean(EntityManagerFactory.class);
+	loanService = new LoanServiceImpl(context.getBean(LoanRepository.class),
+		context.getBean(BookRepository.class), context.getBean(CustomerRepository.class));
+	pageRequest = PageRequest.of(0, 20);
+    }
+
+    private static void printPlan(JdbcTemplate jdbcTemplate, String name, String sql) {
+	System.out.println(name + ": " + jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	context.close();
+    }
+
+    private long randomId() {
+	return ThreadLocalRandom.current().nextLong(1, size + 1);
+    }
+
+    @Benchmark
+    public List<LoanDTO> splitByIsbn() {
+	LoanFilterDTO filter = LoanFilterDTO.builder().isbn(DataSet.isbn(randomId())).build();
+	return loanService.findDTOs(filter, pageRequest).getContent();
+    }
+
+    @Benchmark
+    public List<LoanDTO> splitByCustomer() {
+	LoanFilterDTO filter = LoanFilterDTO.builder().customer(DataSet.customer(randomId())).build();
+	return loanService.findDTOs(filter, pageRequest).getContent();
+    }
+
+    @Benchmark
+    public List<LoanDTO> splitByIsbnOrCustomer() {
+	LoanFilterDTO filter = LoanFilterDTO.builder()
+		.isbn(DataSet.isbn(randomId()))
+		.customer(DataSet.customer(randomId()))
+		.build();
+	return loanService.findDTOs(filter, pageRequest).getContent();
+    }
+
+    @Benchmark
+    public List<LoanDTO> orByIsbnOrCustomer() {
+	EntityManager entityManager = entityManagerFactory.createEntityManager();
+	try {
+	    return entityManager.createQuery(OR_SEARCH, LoanDTO.class)
+		    .setParameter("isbn", DataSet.isbn(randomId()))
+		    .setParameter("customer", DataSet.customer(randomId()))
+		    .setMaxResults(pageRequest.getPageSize())
+		    .getResultList();
+	} finally {
+	    entityManager.close();
+	}
+    }
+
+}
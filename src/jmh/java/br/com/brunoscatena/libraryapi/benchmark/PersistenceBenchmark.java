@@ -0,0 +1,126 @@
+package br.com.brunoscatena.libraryapi.benchmark;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanFilterDTO;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
+import br.com.brunoscatena.libraryapi.model.entity.Loan;
+import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
+import br.com.brunoscatena.libraryapi.model.repository.CustomerRepository;
+import br.com.brunoscatena.libraryapi.model.repository.LoanRepository;
+import br.com.brunoscatena.libraryapi.service.BookService;
+import br.com.brunoscatena.libraryapi.service.CountMode;
+import br.com.brunoscatena.libraryapi.service.LoanService;
+import br.com.brunoscatena.libraryapi.service.impl.BookServiceImpl;
+import br.com.brunoscatena.libraryapi.service.impl.LoanServiceImpl;
+
+/**
+ * Baseline for the service and repository hot paths against an in-memory H2
+ * seeded with {@link #size} books and loans. Throughput and the sample-time
+ * distribution (p99 included) are reported for every path:
+ *
+ * <pre>
+ * ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="PersistenceBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PersistenceBenchmark {
+
+    @Param({ "10000", "1000000" })
+    private int size;
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private LoanService loanService;
+    private TransactionTemplate transactionTemplate;
+
+    private final Pageable pageRequest = PageRequest.of(0, 20);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	context = BenchmarkApplication.start("persistence-" + size);
+
+	DataSet.seed(context.getBean(JdbcTemplate.class), size);
+
+	bookService = new BookServiceImpl(context.getBean(BookRepository.class));
+	loanService = new LoanServiceImpl(context.getBean(LoanRepository.class),
+		context.getBean(BookRepository.class), context.getBean(CustomerRepository.class));
+	transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	context.close();
+    }
+
+    private long randomId() {
+	return ThreadLocalRandom.current().nextLong(1, size + 1);
+    }
+
+    @Benchmark
+    public Slice<BookDTO> bookFind() {
+	Book filter = Book.builder().title(DataSet.title(randomId())).build();
+	return bookService.findDTOs(filter, pageRequest, CountMode.EXACT);
+    }
+
+    /**
+     * Insert guarded by the active-loan unique index, for a book whose last
+     * loan was returned (even ids, see {@link DataSet}). The transaction is
+     * rolled back so every invocation sees the same data.
+     */
+    @Benchmark
+    public Long loanSave() {
+	long id = 2 * ThreadLocalRandom.current().nextLong(1, size / 2 + 1);
+	Book book = Book.builder().id(id).build();
+
+	return transactionTemplate.execute(status -> {
+	    status.setRollbackOnly();
+	    Loan loan = Loan.builder()
+		    .book(book)
+		    .customer(Customer.builder().id(DataSet.customerId(id)).build())
+		    .loanDate(LocalDate.now())
+		    .build();
+	    return loanService.save(loan).getId();
+	});
+    }
+
+    @Benchmark
+    public List<LoanDTO> loanFind() {
+	long id = randomId();
+	LoanFilterDTO filter = LoanFilterDTO.builder()
+		.isbn(DataSet.isbn(id))
+		.customer(DataSet.customer(id))
+		.build();
+
+	return loanService.findDTOs(filter, pageRequest).getContent();
+    }
+
+}
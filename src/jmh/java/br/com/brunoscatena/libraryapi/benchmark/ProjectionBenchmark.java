@@ -0,0 +1,164 @@
+package br.com.brunoscatena.libraryapi.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanFilterDTO;
+import br.com.brunoscatena.libraryapi.api.mapper.BookMapper;
+import br.com.brunoscatena.libraryapi.api.mapper.LoanMapper;
+import br.com.brunoscatena.libraryapi.api.mapper.impl.BookMapperImpl;
+import br.com.brunoscatena.libraryapi.api.mapper.impl.LoanMapperImpl;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.entity.Loan;
+import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
+import br.com.brunoscatena.libraryapi.model.repository.CustomerRepository;
+import br.com.brunoscatena.libraryapi.model.repository.LoanRepository;
+import br.com.brunoscatena.libraryapi.service.BookService;
+import br.com.brunoscatena.libraryapi.service.CountMode;
+import br.com.brunoscatena.libraryapi.service.LoanService;
+import br.com.brunoscatena.libraryapi.service.impl.BookServiceImpl;
+import br.com.brunoscatena.libraryapi.service.impl.LoanServiceImpl;
+
+/**
+ * One page of the book and loan searches, loaded as entities and mapped the
+ * way the controllers used to, against the same page read straight into DTOs
+ * by the services. The entity baseline runs its own queries, since no service
+ * loads these pages as entities any more.
+ * Run with {@code -prof gc} and compare gc.alloc.rate.norm, the bytes
+ * allocated per page:
+ *
+ * <pre>
+ * ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="ProjectionBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProjectionBenchmark {
+
+    @Param({ "100000" })
+    private int size;
+
+    @Param({ "20", "100" })
+    private int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private LoanService loanService;
+    private CustomerRepository customerRepository;
+    private EntityManagerFactory entityManagerFactory;
+    private BookMapper bookMapper;
+    private LoanMapper loanMapper;
+    private Pageable pageRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	context = BenchmarkApplication.start("projection-" + size);
+
+	DataSet.seed(context.getBean(JdbcTemplate.class), size);
+
+	bookService = new BookServiceImpl(context.getBean(BookRepository.class));
+	loanService = new LoanServiceImpl(context.getBean(LoanRepository.class),
+		context.getBean(BookRepository.class), context.getBean(CustomerRepository.class));
+	customerRepository = context.getBean(CustomerRepository.class);
+	entityManagerFactory = context.getBean(EntityManagerFactory.class);
+	bookMapper = new BookMapperImpl();
+	loanMapper = new LoanMapperImpl(bookMapper);
+	pageRequest = PageRequest.of(0, pageSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	context.close();
+    }
+
+    /*
+     * Every seeded title starts with "Title", so the filter matches the whole
+     * catalog and every page is full.
+     */
+    private Book bookFilter() {
+	return Book.builder().title("Title").build();
+    }
+
+    private LoanFilterDTO loanFilter() {
+	long id = ThreadLocalRandom.current().nextLong(1, size + 1);
+	return LoanFilterDTO.builder().customer(DataSet.customer(id)).build();
+    }
+
+    @Benchmark
+    public List<BookDTO> bookEntities() {
+	EntityManager entityManager = entityManagerFactory.createEntityManager();
+	try {
+	    return entityManager
+		    .createQuery("SELECT b FROM Book b WHERE LOWER(b.title) LIKE :title", Book.class)
+		    .setParameter("title", "%" + bookFilter().getTitle().toLowerCase() + "%")
+		    .setMaxResults(pageSize)
+		    .getResultList()
+		    .stream()
+		    .map(bookMapper::toDTO)
+		    .collect(Collectors.toList());
+	} finally {
+	    entityManager.close();
+	}
+    }
+
+    @Benchmark
+    public List<BookDTO> bookDTOs() {
+	return bookService.findDTOs(bookFilter(), pageRequest, CountMode.NONE).getContent();
+    }
+
+    @Benchmark
+    public List<LoanDTO> loanEntities() {
+	Long customerId = customerRepository.findIdByName(loanFilter().getCustomer()).orElse(null);
+	if (customerId == null) {
+	    return Collections.emptyList();
+	}
+
+	EntityManager entityManager = entityManagerFactory.createEntityManager();
+	try {
+	    return entityManager
+		    .createQuery("SELECT l FROM Loan l JOIN FETCH l.book JOIN FETCH l.customer "
+			    + "WHERE l.customer.id = :customerId",
+			    Loan.class)
+		    .setParameter("customerId", customerId)
+		    .setMaxResults(pageSize)
+		    .getResultList()
+		    .stream()
+		    .map(loanMapper::toDTO)
+		    .collect(Collectors.toList());
+	} finally {
+	    entityManager.close();
+	}
+    }
+
+    @Benchmark
+    public List<LoanDTO> loanDTOs() {
+	return loanService.findDTOs(loanFilter(), pageRequest).getContent();
+    }
+
+}
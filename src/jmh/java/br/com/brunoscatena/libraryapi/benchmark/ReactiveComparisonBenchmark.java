@@ -0,0 +1,134 @@
+package br.com.brunoscatena.libraryapi.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.data.r2dbc.core.DefaultReactiveDataAccessStrategy;
+import org.springframework.data.r2dbc.dialect.H2Dialect;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
+import br.com.brunoscatena.libraryapi.model.repository.reactive.ReactiveBookRepository;
+import br.com.brunoscatena.libraryapi.service.BookService;
+import br.com.brunoscatena.libraryapi.service.ReactiveBookService;
+import br.com.brunoscatena.libraryapi.service.impl.BookServiceImpl;
+import br.com.brunoscatena.libraryapi.service.impl.ReactiveBookServiceImpl;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import reactor.core.publisher.Flux;
+
+/**
+ * Throughput of the blocking services against the reactive ones on R2DBC, over
+ * the same database: reading the whole catalog page by page, and a burst of
+ * {@link #lookups} lookups by id, one after the other on the blocking path and
+ * {@link #concurrency} at a time on the reactive one. Blocking lookups read
+ * through the Book second-level cache, as they do in the servlet stack.
+ *
+ * <pre>
+ * ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="ReactiveComparisonBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ReactiveComparisonBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({ "10000" })
+    private int size;
+
+    @Param({ "64" })
+    private int lookups;
+
+    @Param({ "8" })
+    private int concurrency;
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private ReactiveBookService reactiveBookService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	context = BenchmarkApplication.start("reactive-" + size);
+
+	DataSet.seed(context.getBean(JdbcTemplate.class), size);
+
+	bookService = new BookServiceImpl(context.getBean(BookRepository.class));
+
+	ConnectionFactory connectionFactory = ConnectionFactories
+		.get("r2dbc:h2:mem:///reactive-" + size + "?options=DB_CLOSE_DELAY=-1");
+	R2dbcRepositoryFactory repositoryFactory = new R2dbcRepositoryFactory(
+		DatabaseClient.create(connectionFactory),
+		new DefaultReactiveDataAccessStrategy(H2Dialect.INSTANCE));
+	reactiveBookService = new ReactiveBookServiceImpl(
+		repositoryFactory.getRepository(ReactiveBookRepository.class), null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	context.close();
+    }
+
+    private long randomId() {
+	return ThreadLocalRandom.current().nextLong(1, size + 1);
+    }
+
+    @Benchmark
+    public long streamBlocking() {
+	Book filter = new Book();
+	long count = 0;
+	Long lastId = 0L;
+	Slice<Book> slice;
+	do {
+	    slice = bookService.findAfter(filter, lastId, PAGE_SIZE);
+	    for (Book book : slice) {
+		lastId = book.getId();
+		count++;
+	    }
+	} while (slice.hasNext());
+	return count;
+    }
+
+    @Benchmark
+    public long streamReactive() {
+	return reactiveBookService.find(new Book()).count().block();
+    }
+
+    @Benchmark
+    public long lookupsBlocking() {
+	long found = 0;
+	for (int i = 0; i < lookups; i++) {
+	    if (bookService.findById(randomId()).isPresent()) {
+		found++;
+	    }
+	}
+	return found;
+    }
+
+    @Benchmark
+    public long lookupsReactive() {
+	return Flux.range(0, lookups)
+		.flatMap(i -> reactiveBookService.findById(randomId()), concurrency)
+		.count()
+		.block();
+    }
+
+}
@@ -0,0 +1,137 @@
+package br.com.brunoscatena.libraryapi.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import br.com.brunoscatena.libraryapi.LibraryApiApplication;
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.mapper.BookMapper;
+import br.com.brunoscatena.libraryapi.service.BookService;
+
+/**
+ * Load test of the whole web stack with far more concurrent clients than the
+ * 200 Tomcat threads, each request blocking for {@link #blockingMillis} before
+ * it reads a book. On the platform pool, requests queue behind the blocked
+ * threads and latency grows with the number of clients. On virtual threads it
+ * should stay close to the blocking time. The virtual thread run needs Java
+ * 21 or later:
+ *
+ * <pre>
+ * ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="RequestConcurrencyBenchmark -t 1000"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(800)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g", "-Dhttp.maxConnections=2000" })
+public class RequestConcurrencyBenchmark {
+
+    private static final int SIZE = 10000;
+
+    @Param({ "false", "true" })
+    private boolean virtualThreads;
+
+    @Param({ "20" })
+    private int blockingMillis;
+
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	context = new SpringApplicationBuilder(LibraryApiApplication.class)
+		.properties("server.port=0",
+			"library.threads.virtual.enabled=" + virtualThreads,
+			"spring.datasource.url=jdbc:h2:mem:concurrency;DB_CLOSE_DELAY=-1",
+			"spring.datasource.hikari.maximum-pool-size=50",
+			"logging.level.root=WARN")
+		.run();
+
+	DataSet.seed(context.getBean(JdbcTemplate.class), SIZE);
+
+	baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+		+ "/benchmark/books/";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	context.close();
+    }
+
+    @Benchmark
+    public int getBook() throws IOException {
+	long id = ThreadLocalRandom.current().nextLong(1, SIZE + 1);
+	HttpURLConnection connection = (HttpURLConnection) new URL(
+		baseUrl + id + "?blockingMillis=" + blockingMillis).openConnection();
+
+	int status = connection.getResponseCode();
+	try (InputStream body = connection.getInputStream()) {
+	    byte[] buffer = new byte[1024];
+	    while (body.read(buffer) != -1) {
+		// drained so the connection is reused
+	    }
+	}
+	return status;
+    }
+
+    /**
+     * Stands in for a request that waits on a slow dependency (a remote call,
+     * a contended lock) before reading a book. The wait happens outside JDBC,
+     * because H2 would pin the carrier thread while inside its synchronized
+     * session code. Picked up by the component scan of LibraryApiApplication,
+     * which covers this package.
+     */
+    @RestController
+    public static class BlockingBookController {
+
+	private final BookService bookService;
+	private final BookMapper bookMapper;
+
+	public BlockingBookController(BookService bookService, BookMapper bookMapper) {
+	    this.bookService = bookService;
+	    this.bookMapper = bookMapper;
+	}
+
+	@GetMapping("/benchmark/books/{id}")
+	public BookDTO get(@PathVariable Long id, @RequestParam long blockingMillis)
+		throws InterruptedException {
+	    Thread.sleep(blockingMillis);
+	    return bookService.findById(id)
+		    .map(bookMapper::toDTO)
+		    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+	}
+
+    }
+
+}
@@ -1,16 +1,27 @@
 package br.com.brunoscatena.libraryapi;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 
+import br.com.brunoscatena.libraryapi.api.mapper.BookMapper;
+import br.com.brunoscatena.libraryapi.api.mapper.LoanMapper;
+import br.com.brunoscatena.libraryapi.api.mapper.impl.BookMapperImpl;
+import br.com.brunoscatena.libraryapi.api.mapper.impl.LoanMapperImpl;
+
 @SpringBootApplication
+@EnableCaching
 public class LibraryApiApplication {
 
     @Bean
-    public ModelMapper modelMapper() {
-	return new ModelMapper();
+    public BookMapper bookMapper() {
+	return new BookMapperImpl();
+    }
+
+    @Bean
+    public LoanMapper loanMapper(BookMapper bookMapper) {
+	return new LoanMapperImpl(bookMapper);
     }
 
     public static void main(String[] args) {
@@ -1,5 +1,6 @@
 package br.com.brunoscatena.libraryapi.api;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -7,6 +8,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
 import org.springframework.web.server.ResponseStatusException;
 
 import br.com.brunoscatena.libraryapi.api.exceptions.ApiError;
@@ -22,12 +24,31 @@ public class ApplicationControllerAdvice {
 	return new ApiError(bindingResult);
     }
 
+    /**
+     * The same validation errors, raised by WebFlux under the reactive profile.
+     */
+    @ExceptionHandler(WebExchangeBindException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiError handleValidationExceptions(WebExchangeBindException ex) {
+	return new ApiError(ex.getBindingResult());
+    }
+
     @ExceptionHandler(BusinessException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ApiError handlerBusinessExceptions(BusinessException ex) {
 	return new ApiError(ex);
     }
 
+    /**
+     * The entity was changed by someone else since the client, or this
+     * request, read it.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ApiError handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+	return new ApiError("Changed by another request, reload it and try again");
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<ApiError> handleResponseStatusException(ResponseStatusException ex) {
 	return new ResponseEntity<ApiError>(new ApiError(ex), ex.getStatus());
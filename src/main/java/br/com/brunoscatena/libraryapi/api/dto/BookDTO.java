@@ -23,4 +23,12 @@ public class BookDTO {
     @NotEmpty
     private String isbn;
 
+    private Boolean loaned;
+
+    /**
+     * Version the client read. Sent back on update, it makes the update fail
+     * with 409 if the book changed in between.
+     */
+    private Long version;
+
 }
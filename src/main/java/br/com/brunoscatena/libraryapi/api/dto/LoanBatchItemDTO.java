@@ -0,0 +1,23 @@
+package br.com.brunoscatena.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one item of a batch checkout or return. The error is null when
+ * the item succeeded.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanBatchItemDTO {
+
+    private int index;
+    private Long id;
+    private String isbn;
+    private String error;
+
+}
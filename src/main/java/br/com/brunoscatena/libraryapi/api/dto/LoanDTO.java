@@ -1,5 +1,7 @@
 package br.com.brunoscatena.libraryapi.api.dto;
 
+import java.time.LocalDate;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,5 +17,19 @@ public class LoanDTO {
     private String isbn;
     private String customer;
     private BookDTO book;
+    private LocalDate dueDate;
+    private LocalDate returnDate;
+    private Long version;
+
+    /**
+     * Flat form of the loan and its book, for the constructor expressions of
+     * LoanRepository.
+     */
+    public LoanDTO(Long id, String customer, LocalDate dueDate, LocalDate returnDate,
+	    Long version, Long bookId, String title, String author, String isbn,
+	    Boolean loaned, Long bookVersion) {
+	this(id, isbn, customer, new BookDTO(bookId, title, author, isbn, loaned, bookVersion),
+		dueDate, returnDate, version);
+    }
 
 }
@@ -0,0 +1,26 @@
+package br.com.brunoscatena.libraryapi.api.dto;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Flat loan row of the loan history export, read straight from a query
+ * without loading the loan or book entities.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanExportDTO {
+
+    private Long id;
+    private String customer;
+    private String isbn;
+    private LocalDate loanDate;
+    private Boolean returned;
+
+}
@@ -0,0 +1,25 @@
+package br.com.brunoscatena.libraryapi.api.dto;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Overdue loan as handed to the notification sink, read straight from the
+ * overdue range query.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueLoanDTO {
+
+    private Long id;
+    private String customer;
+    private String isbn;
+    private LocalDate dueDate;
+
+}
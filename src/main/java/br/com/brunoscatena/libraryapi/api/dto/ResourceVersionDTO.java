@@ -0,0 +1,23 @@
+package br.com.brunoscatena.libraryapi.api.dto;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Version and last change of a book or loan, read without loading the entity
+ * to answer conditional requests.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResourceVersionDTO {
+
+    private Long version;
+    private Instant lastModified;
+
+}
@@ -13,4 +13,7 @@ public class ReturnedLoanDTO {
 
     private Boolean returned;
 
+    /** Version of the loan the client read, as in BookDTO. */
+    private Long version;
+
 }
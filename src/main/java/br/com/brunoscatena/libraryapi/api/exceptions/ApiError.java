@@ -22,6 +22,10 @@ public class ApiError {
 	this.errors = Arrays.asList(ex.getMessage());
     }
 
+    public ApiError(String message) {
+	this.errors = Arrays.asList(message);
+    }
+
     public ApiError(ResponseStatusException ex) {
 	this.errors = Arrays.asList(ex.getReason());
     }
@@ -0,0 +1,26 @@
+package br.com.brunoscatena.libraryapi.api.export;
+
+import org.springframework.http.MediaType;
+
+public enum ExportFormat {
+
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    ExportFormat(String mediaType, String extension) {
+	this.mediaType = MediaType.parseMediaType(mediaType);
+	this.extension = extension;
+    }
+
+    public MediaType getMediaType() {
+	return mediaType;
+    }
+
+    public String getExtension() {
+	return extension;
+    }
+
+}
@@ -0,0 +1,119 @@
+package br.com.brunoscatena.libraryapi.api.export;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes export rows to the response as they are read from the database, so
+ * only the current row is held in memory. Call {@link #flush()} after the last
+ * row.
+ */
+public abstract class ExportWriter<T> implements Consumer<T>, Flushable {
+
+    protected final Writer writer;
+
+    private ExportWriter(OutputStream out) {
+	this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    public static <T> ExportWriter<T> of(ExportFormat format, OutputStream out,
+	    ObjectMapper objectMapper, List<String> header, Function<T, List<Object>> columns) {
+	return format == ExportFormat.CSV
+		? new Csv<T>(out, header, columns)
+		: new Ndjson<T>(out, objectMapper);
+    }
+
+    @Override
+    public void accept(T row) {
+	try {
+	    write(row);
+	} catch (IOException ex) {
+	    throw new UncheckedIOException(ex);
+	}
+    }
+
+    protected abstract void write(T row) throws IOException;
+
+    @Override
+    public void flush() throws IOException {
+	writer.flush();
+    }
+
+    private static class Ndjson<T> extends ExportWriter<T> {
+
+	private final ObjectWriter rowWriter;
+
+	Ndjson(OutputStream out, ObjectMapper objectMapper) {
+	    super(out);
+	    this.rowWriter = objectMapper.writer()
+		    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+		    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	}
+
+	@Override
+	protected void write(T row) throws IOException {
+	    rowWriter.writeValue(writer, row);
+	    writer.write('\n');
+	}
+
+    }
+
+    private static class Csv<T> extends ExportWriter<T> {
+
+	private final Function<T, List<Object>> columns;
+
+	Csv(OutputStream out, List<String> header, Function<T, List<Object>> columns) {
+	    super(out);
+	    this.columns = columns;
+	    try {
+		writeLine(header);
+	    } catch (IOException ex) {
+		throw new UncheckedIOException(ex);
+	    }
+	}
+
+	@Override
+	protected void write(T row) throws IOException {
+	    writeLine(columns.apply(row));
+	}
+
+	private void writeLine(List<?> values) throws IOException {
+	    for (int i = 0; i < values.size(); i++) {
+		if (i > 0) {
+		    writer.write(',');
+		}
+		writer.write(escape(values.get(i)));
+	    }
+	    writer.write("\r\n");
+	}
+
+	private String escape(Object value) {
+	    if (value == null) {
+		return "";
+	    }
+
+	    String text = value.toString();
+	    if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0
+		    && text.indexOf('\r') < 0) {
+		return text;
+	    }
+	    return '"' + text.replace("\"", "\"\"") + '"';
+	}
+
+    }
+
+}
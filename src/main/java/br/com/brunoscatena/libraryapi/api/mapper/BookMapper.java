@@ -0,0 +1,12 @@
+package br.com.brunoscatena.libraryapi.api.mapper;
+
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+
+public interface BookMapper {
+
+    Book toEntity(BookDTO dto);
+
+    BookDTO toDTO(Book entity);
+
+}
@@ -0,0 +1,10 @@
+package br.com.brunoscatena.libraryapi.api.mapper;
+
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.model.entity.Loan;
+
+public interface LoanMapper {
+
+    LoanDTO toDTO(Loan entity);
+
+}
@@ -0,0 +1,36 @@
+package br.com.brunoscatena.libraryapi.api.mapper.impl;
+
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.api.mapper.BookMapper;
+import br.com.brunoscatena.libraryapi.api.mapper.LoanMapper;
+import br.com.brunoscatena.libraryapi.model.entity.Loan;
+
+public class LoanMapperImpl implements LoanMapper {
+
+    private final BookMapper bookMapper;
+
+    public LoanMapperImpl(BookMapper bookMapper) {
+	this.bookMapper = bookMapper;
+    }
+
+    @Override
+    public LoanDTO toDTO(Loan entity) {
+	if (entity == null) {
+	    return null;
+	}
+
+	BookDTO book = bookMapper.toDTO(entity.getBook());
+
+	LoanDTO dto = new LoanDTO();
+	dto.setId(entity.getId());
+	dto.setCustomer(entity.getCustomer() != null ? entity.getCustomer().getName() : null);
+	dto.setBook(book);
+	dto.setIsbn(book != null ? book.getIsbn() : null);
+	dto.setDueDate(entity.getDueDate());
+	dto.setReturnDate(entity.getReturnDate());
+	dto.setVersion(entity.getVersion());
+	return dto;
+    }
+
+}
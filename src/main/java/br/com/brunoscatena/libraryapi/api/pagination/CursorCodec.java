@@ -0,0 +1,44 @@
+package br.com.brunoscatena.libraryapi.api.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Encodes the id of the last element of a page as an opaque continuation token.
+ * An empty token means the first page.
+ */
+public final class CursorCodec {
+
+    private static final String PREFIX = "id:";
+
+    private CursorCodec() {
+    }
+
+    public static String encode(Long lastId) {
+	if (lastId == null) {
+	    return null;
+	}
+	byte[] bytes = (PREFIX + lastId).getBytes(StandardCharsets.UTF_8);
+	return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public static Long decode(String cursor) {
+	if (cursor == null || cursor.isEmpty()) {
+	    return null;
+	}
+
+	try {
+	    String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+	    if (!value.startsWith(PREFIX)) {
+		throw new IllegalArgumentException(value);
+	    }
+	    return Long.valueOf(value.substring(PREFIX.length()));
+	} catch (IllegalArgumentException ex) {
+	    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+	}
+    }
+
+}
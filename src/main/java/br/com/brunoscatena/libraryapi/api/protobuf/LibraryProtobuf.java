@@ -0,0 +1,147 @@
+package br.com.brunoscatena.libraryapi.api.protobuf;
+
+import java.util.List;
+
+import org.springframework.http.MediaType;
+
+import com.google.protobuf.Message;
+
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+
+/**
+ * Copies the DTOs into the messages generated from src/main/proto/library.proto
+ * (LibraryMessages), which encode them. Null fields are left unset, so they are
+ * absent on the wire.
+ */
+public final class LibraryProtobuf {
+
+    public static final MediaType MEDIA_TYPE = new MediaType("application", "x-protobuf");
+
+    /**
+     * The message of one DTO, and of a page of them.
+     */
+    public interface Encoder<T> {
+
+	Message message(T value);
+
+	/**
+	 * A BookPage or a LoanPage. totalElements and nextCursor are null when
+	 * they don't apply.
+	 */
+	Message page(List<T> content, int number, int size, Long totalElements, boolean hasNext,
+		String nextCursor);
+
+    }
+
+    public static final Encoder<BookDTO> BOOK = new Encoder<BookDTO>() {
+
+	@Override
+	public Message message(BookDTO book) {
+	    return book(book);
+	}
+
+	@Override
+	public Message page(List<BookDTO> content, int number, int size, Long totalElements,
+		boolean hasNext, String nextCursor) {
+
+	    LibraryMessages.BookPage.Builder page = LibraryMessages.BookPage.newBuilder()
+		    .setNumber(number)
+		    .setSize(size)
+		    .setHasNext(hasNext);
+	    for (BookDTO book : content) {
+		page.addContent(book(book));
+	    }
+	    if (totalElements != null) {
+		page.setTotalElements(totalElements);
+	    }
+	    if (nextCursor != null) {
+		page.setNextCursor(nextCursor);
+	    }
+	    return page.build();
+	}
+
+    };
+
+    public static final Encoder<LoanDTO> LOAN = new Encoder<LoanDTO>() {
+
+	@Override
+	public Message message(LoanDTO loan) {
+	    return loan(loan);
+	}
+
+	@Override
+	public Message page(List<LoanDTO> content, int number, int size, Long totalElements,
+		boolean hasNext, String nextCursor) {
+
+	    LibraryMessages.LoanPage.Builder page = LibraryMessages.LoanPage.newBuilder()
+		    .setNumber(number)
+		    .setSize(size)
+		    .setHasNext(hasNext);
+	    for (LoanDTO loan : content) {
+		page.addContent(loan(loan));
+	    }
+	    if (totalElements != null) {
+		page.setTotalElements(totalElements);
+	    }
+	    if (nextCursor != null) {
+		page.setNextCursor(nextCursor);
+	    }
+	    return page.build();
+	}
+
+    };
+
+    private LibraryProtobuf() {
+    }
+
+    private static LibraryMessages.Book book(BookDTO book) {
+	LibraryMessages.Book.Builder message = LibraryMessages.Book.newBuilder();
+	if (book.getId() != null) {
+	    message.setId(book.getId());
+	}
+	if (book.getTitle() != null) {
+	    message.setTitle(book.getTitle());
+	}
+	if (book.getAuthor() != null) {
+	    message.setAuthor(book.getAuthor());
+	}
+	if (book.getIsbn() != null) {
+	    message.setIsbn(book.getIsbn());
+	}
+	if (book.getLoaned() != null) {
+	    message.setLoaned(book.getLoaned());
+	}
+	if (book.getVersion() != null) {
+	    message.setVersion(book.getVersion());
+	}
+	return message.build();
+    }
+
+    private static LibraryMessages.Loan loan(LoanDTO loan) {
+	LibraryMessages.Loan.Builder message = LibraryMessages.Loan.newBuilder();
+	if (loan.getId() != null) {
+	    message.setId(loan.getId());
+	}
+	if (loan.getIsbn() != null) {
+	    message.setIsbn(loan.getIsbn());
+	}
+	if (loan.getCustomer() != null) {
+	    message.setCustomer(loan.getCustomer());
+	}
+	if (loan.getBook() != null) {
+	    message.setBook(book(loan.getBook()));
+	}
+	if (loan.getDueDate() != null) {
+	    message.setDueDate(loan.getDueDate().toEpochDay());
+	}
+	if (loan.getReturnDate() != null) {
+	    message.setReturnDate(loan.getReturnDate().toEpochDay());
+	}
+	if (loan.getVersion() != null) {
+	    message.setVersion(loan.getVersion());
+	}
+	return message.build();
+    }
+
+}
@@ -0,0 +1,127 @@
+package br.com.brunoscatena.libraryapi.api.protobuf;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.CursorPageDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+
+/**
+ * Writes books and loans as application/x-protobuf: a single BookDTO or
+ * LoanDTO, or a page, slice, cursor page or list of them, as declared by the
+ * controller method. Anything else, errors included, is left to the other
+ * converters, so clients should accept JSON at a lower quality as well.
+ * Response only: request bodies stay JSON.
+ */
+public class ProtobufDTOHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public ProtobufDTOHttpMessageConverter() {
+	super(LibraryProtobuf.MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+	return encoderOf(clazz, clazz) != null;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+	return false;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+	return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+	return canWrite(mediaType) && encoderOf(type, clazz) != null;
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage)
+	    throws IOException {
+	CodedOutputStream out = CodedOutputStream.newInstance(outputMessage.getBody(), BUFFER_SIZE);
+	message(value, encoderOf(type, value.getClass())).writeTo(out);
+	out.flush();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Message message(Object value, LibraryProtobuf.Encoder<T> encoder) {
+	if (value instanceof Slice) {
+	    Slice<T> slice = (Slice<T>) value;
+	    Long totalElements = slice instanceof Page ? ((Page<T>) slice).getTotalElements() : null;
+	    return encoder.page(slice.getContent(), slice.getNumber(), slice.getSize(),
+		    totalElements, slice.hasNext(), null);
+	}
+	if (value instanceof CursorPageDTO) {
+	    CursorPageDTO<T> page = (CursorPageDTO<T>) value;
+	    return encoder.page(page.getContent(), 0, page.getSize(), null,
+		    page.getNextCursor() != null, page.getNextCursor());
+	}
+	if (value instanceof List) {
+	    List<T> list = (List<T>) value;
+	    return encoder.page(list, 0, list.size(), null, false, null);
+	}
+	return encoder.message((T) value);
+    }
+
+    /*
+     * The element type of a container comes from the declared type, so an
+     * empty page is still known to be a page of books or of loans.
+     */
+    private static LibraryProtobuf.Encoder<?> encoderOf(Type type, Class<?> clazz) {
+	if (!Slice.class.isAssignableFrom(clazz) && !CursorPageDTO.class.isAssignableFrom(clazz)
+		&& !List.class.isAssignableFrom(clazz)) {
+	    return encoderOf(clazz);
+	}
+
+	ResolvableType declared = ResolvableType.forType(type == null ? clazz : type);
+	for (Class<?> container : new Class<?>[] { Slice.class, CursorPageDTO.class, List.class }) {
+	    if (container.isAssignableFrom(clazz)) {
+		return encoderOf(declared.as(container).resolveGeneric(0));
+	    }
+	}
+	return null;
+    }
+
+    private static LibraryProtobuf.Encoder<?> encoderOf(Class<?> clazz) {
+	if (clazz == BookDTO.class) {
+	    return LibraryProtobuf.BOOK;
+	}
+	if (clazz == LoanDTO.class) {
+	    return LibraryProtobuf.LOAN;
+	}
+	return null;
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+	throw new HttpMessageNotReadableException("Protobuf request bodies are not supported",
+		inputMessage);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+	throw new HttpMessageNotReadableException("Protobuf request bodies are not supported",
+		inputMessage);
+    }
+
+}
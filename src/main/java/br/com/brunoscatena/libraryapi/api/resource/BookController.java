@@ -1,15 +1,22 @@
 package br.com.brunoscatena.libraryapi.api.resource;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import javax.validation.Valid;
 
-import org.modelmapper.ModelMapper;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -17,69 +24,265 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.BookImportErrorDTO;
+import br.com.brunoscatena.libraryapi.api.dto.BookImportResultDTO;
+import br.com.brunoscatena.libraryapi.api.dto.CursorPageDTO;
+import br.com.brunoscatena.libraryapi.api.dto.ResourceVersionDTO;
+import br.com.brunoscatena.libraryapi.api.export.ExportFormat;
+import br.com.brunoscatena.libraryapi.api.export.ExportWriter;
+import br.com.brunoscatena.libraryapi.api.mapper.BookMapper;
+import br.com.brunoscatena.libraryapi.api.pagination.CursorCodec;
 import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.service.BookSearchService;
 import br.com.brunoscatena.libraryapi.service.BookService;
+import br.com.brunoscatena.libraryapi.service.CountMode;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/books")
 public class BookController {
 
+    private static final List<String> EXPORT_HEADER = Arrays.asList("id", "title", "author", "isbn",
+	    "loaned");
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+
     private BookService bookService;
-    private ModelMapper modelMapper;
+    private BookSearchService bookSearchService;
+    private BookMapper bookMapper;
+    private ObjectMapper objectMapper;
+    private int maxPageSize;
 
-    public BookController(BookService bookService, ModelMapper modelMapper) {
+    /*
+     * The cursor pages and the text search take their size as a plain
+     * parameter, so they get the same upper bound Spring Data applies to the
+     * Pageable of the other searches.
+     */
+    public BookController(BookService bookService, BookSearchService bookSearchService,
+	    BookMapper bookMapper, ObjectMapper objectMapper,
+	    @Value("${spring.data.web.pageable.max-page-size:2000}") int maxPageSize) {
 	this.bookService = bookService;
-	this.modelMapper = modelMapper;
+	this.bookSearchService = bookSearchService;
+	this.bookMapper = bookMapper;
+	this.objectMapper = objectMapper;
+	this.maxPageSize = maxPageSize;
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public BookDTO create(@RequestBody @Valid BookDTO dto) {
-	Book entity = modelMapper.map(dto, Book.class);
+	Book entity = bookMapper.toEntity(dto);
 	entity = bookService.save(entity);
-	return modelMapper.map(entity, BookDTO.class);
+	return bookMapper.toDTO(entity);
+    }
+
+    /**
+     * Creates many books at once from a JSON array. Invalid rows are skipped and
+     * reported by their position in the array, the others are imported.
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BookImportResultDTO importBooks(@RequestBody List<BookDTO> dtos) {
+	List<Book> books = dtos.stream()
+		.map(bookMapper::toEntity)
+		.collect(Collectors.toList());
+
+	return bookService.importBooks(books);
+    }
+
+    /**
+     * Same as the JSON array import, with one book per line. Lines are imported
+     * a thousand at a time as they are read, so only one chunk of the body is
+     * held in memory, and the chunks before a malformed line stay imported.
+     * An ISBN repeated in a later chunk is reported as already being used.
+     */
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public BookImportResultDTO importBooksNdjson(InputStream body) throws IOException {
+	BookImportResultDTO result = new BookImportResultDTO(0, new ArrayList<>());
+	List<Book> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+	int firstRow = 0;
+
+	try (MappingIterator<BookDTO> lines = objectMapper.readerFor(BookDTO.class)
+		.readValues(body)) {
+	    while (lines.hasNextValue()) {
+		chunk.add(bookMapper.toEntity(lines.nextValue()));
+		if (chunk.size() == IMPORT_CHUNK_SIZE) {
+		    importChunk(chunk, firstRow, result);
+		    firstRow += chunk.size();
+		    chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+		}
+	    }
+	} catch (JsonProcessingException ex) {
+	    String message = ex.getLocation() == null
+		    ? "Invalid book"
+		    : "Invalid book at line " + ex.getLocation().getLineNr();
+	    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, firstRow == 0
+		    ? message
+		    : message + ", the first " + firstRow + " lines were imported");
+	}
+
+	if (!chunk.isEmpty()) {
+	    importChunk(chunk, firstRow, result);
+	}
+	return result;
+    }
+
+    /*
+     * Adds the result of one chunk to the import, with its error rows moved
+     * to their position in the whole body.
+     */
+    private void importChunk(List<Book> chunk, int firstRow, BookImportResultDTO result) {
+	BookImportResultDTO chunkResult = bookService.importBooks(chunk);
+	result.setImported(result.getImported() + chunkResult.getImported());
+	for (BookImportErrorDTO error : chunkResult.getErrors()) {
+	    error.setRow(firstRow + error.getRow());
+	    result.getErrors().add(error);
+	}
+    }
+
+    /**
+     * Streams the whole catalog, ordered by id, as NDJSON (default) or CSV.
+     * Books are written as they are read, so the size of the catalog doesn't
+     * change the memory used.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+	    @RequestParam(defaultValue = "NDJSON") ExportFormat format) {
+
+	StreamingResponseBody body = out -> {
+	    ExportWriter<BookDTO> writer = ExportWriter.of(format, out, objectMapper,
+		    EXPORT_HEADER, book -> Arrays.asList(book.getId(), book.getTitle(),
+			    book.getAuthor(), book.getIsbn(), book.getLoaned()));
+	    bookService.exportBooks(writer);
+	    writer.flush();
+	};
+
+	return ResponseEntity.ok()
+		.contentType(format.getMediaType())
+		.header(HttpHeaders.CONTENT_DISPOSITION,
+			"attachment; filename=\"books." + format.getExtension() + "\"")
+		.body(body);
     }
 
+    /**
+     * Answers with an ETag (the book version) and Last-Modified. A request that
+     * sends them back is checked against the version alone, and gets a 304
+     * without the book being loaded when it is unchanged.
+     */
     @GetMapping("/{id}")
-    public BookDTO get(@PathVariable Long id) {
-	return bookService.findById(id)
-		.map(entity -> modelMapper.map(entity, BookDTO.class))
+    public BookDTO get(@PathVariable Long id, WebRequest request) {
+	if (ETags.isConditional(request)) {
+	    ResourceVersionDTO version = bookService.findVersion(id)
+		    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+	    if (request.checkNotModified(ETags.of(version.getVersion()),
+		    ETags.lastModified(version.getLastModified()))) {
+		return null;
+	    }
+	}
+
+	Book book = bookService.findById(id)
 		.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+	if (request.checkNotModified(ETags.of(book.getVersion()),
+		ETags.lastModified(book.getLastModified()))) {
+	    return null;
+	}
+	return bookMapper.toDTO(book);
     }
 
+    /**
+     * The count parameter chooses how the total is obtained: EXACT (default)
+     * counts on every request, ESTIMATED reuses a recently cached count and
+     * NONE skips it and answers with a slice. loaned=false lists only the
+     * available books. The books are read as DTOs, and the page is tagged from
+     * their versions, so a poll that finds it unchanged gets a 304 without
+     * writing it.
+     */
     @GetMapping
-    public Page<BookDTO> find(BookDTO dto, Pageable pageRequest) {
+    public Slice<BookDTO> find(BookDTO dto, Pageable pageRequest,
+	    @RequestParam(defaultValue = "EXACT") CountMode count, WebRequest request) {
+
+	Slice<BookDTO> sliceBook = bookService.findDTOs(toFilter(dto), pageRequest, count);
+	if (request.checkNotModified(ETags.ofSlice(sliceBook, BookDTO::getId,
+		found -> ETags.versionOf(found.getVersion())))) {
+	    return null;
+	}
+	return sliceBook;
+    }
 
-	Book book = modelMapper.map(dto, Book.class);
+    @GetMapping(params = "cursor")
+    public CursorPageDTO<BookDTO> findAfter(BookDTO dto, @RequestParam String cursor,
+	    @RequestParam(defaultValue = "20") int size) {
 
-	Page<Book> pageBook = bookService.find(book, pageRequest);
+	if (size < 1 || size > maxPageSize) {
+	    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size");
+	}
 
-	List<BookDTO> dtoList = pageBook.getContent()
+	Book book = toFilter(dto);
+
+	Slice<Book> sliceBook = bookService.findAfter(book, CursorCodec.decode(cursor), size);
+
+	List<BookDTO> dtoList = sliceBook.getContent()
 		.stream()
-		.map(entity -> modelMapper.map(entity, BookDTO.class))
+		.map(bookMapper::toDTO)
 		.collect(Collectors.toList());
 
-	return new PageImpl<BookDTO>(dtoList, pageRequest, pageBook.getTotalElements());
+	String nextCursor = sliceBook.hasNext()
+		? CursorCodec.encode(dtoList.get(dtoList.size() - 1).getId())
+		: null;
+
+	return new CursorPageDTO<BookDTO>(dtoList, size, nextCursor);
+    }
+
+    /**
+     * Full-text search over title, author and ISBN, best matches first.
+     */
+    @GetMapping("/search")
+    public List<BookDTO> search(@RequestParam("q") String query,
+	    @RequestParam(defaultValue = "20") int size) {
+
+	if (size < 1 || size > maxPageSize) {
+	    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size");
+	}
+
+	return bookSearchService.search(query, size)
+		.stream()
+		.map(bookMapper::toDTO)
+		.collect(Collectors.toList());
     }
 
+    /**
+     * When the body carries the version the client read, the update only goes
+     * through if the book is still at that version, otherwise it is answered
+     * with 409. Without it, concurrent updates are still detected between this
+     * read and the write. Only the changed columns are written.
+     */
     @PutMapping("/{id}")
     public BookDTO update(@PathVariable Long id, @RequestBody BookDTO dto) {
 
-	Book book = bookService.findById(id)
+	Book found = bookService.findById(id)
 		.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 
-	book.setAuthor(dto.getAuthor());
-	book.setIsbn(dto.getIsbn());
-	book.setTitle(dto.getTitle());
+	// found may be a cached instance shared with other requests, so it is copied
+	Book book = found.toBuilder()
+		.author(dto.getAuthor())
+		.isbn(dto.getIsbn())
+		.title(dto.getTitle())
+		.version(dto.getVersion() != null ? dto.getVersion() : found.getVersion())
+		.build();
 
 	Book editedBook = bookService.update(book);
 
-	return modelMapper.map(editedBook, BookDTO.class);
+	return bookMapper.toDTO(editedBook);
     }
 
     @DeleteMapping("/{id}")
@@ -92,4 +295,10 @@ public class BookController {
 	bookService.delete(book);
     }
 
+    private Book toFilter(BookDTO dto) {
+	Book filter = bookMapper.toEntity(dto);
+	filter.setLoaned(dto.getLoaned());
+	return filter;
+    }
+
 }
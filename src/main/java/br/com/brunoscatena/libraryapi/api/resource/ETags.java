@@ -0,0 +1,65 @@
+package br.com.brunoscatena.libraryapi.api.resource;
+
+import java.time.Instant;
+import java.util.function.ToLongFunction;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Validators for conditional GETs. A single resource is tagged with its row
+ * version; a page is tagged with a hash of the id and version of each element
+ * and of the page metadata, so it changes when any element changes, appears or
+ * goes away.
+ */
+final class ETags {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ETags() {
+    }
+
+    static boolean isConditional(WebRequest request) {
+	return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+		|| request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    static String of(Long version) {
+	return version == null ? null : "\"" + version + "\"";
+    }
+
+    static long lastModified(Instant lastModified) {
+	return lastModified == null ? -1 : lastModified.toEpochMilli();
+    }
+
+    static <T> String ofSlice(Slice<T> slice, ToLongFunction<T> id, ToLongFunction<T> version) {
+	long hash = FNV_OFFSET;
+	hash = mix(hash, slice.getNumber());
+	hash = mix(hash, slice.getSize());
+	hash = mix(hash, slice.hasNext() ? 1 : 0);
+	if (slice instanceof Page) {
+	    hash = mix(hash, ((Page<T>) slice).getTotalElements());
+	}
+	for (T element : slice.getContent()) {
+	    hash = mix(hash, id.applyAsLong(element));
+	    hash = mix(hash, version.applyAsLong(element));
+	}
+	return "W/\"" + Long.toHexString(hash) + "\"";
+    }
+
+    static long versionOf(Long version) {
+	return version == null ? 0 : version;
+    }
+
+    private static long mix(long hash, long value) {
+	for (int i = 0; i < 8; i++) {
+	    hash ^= (value >>> (i * 8)) & 0xff;
+	    hash *= FNV_PRIME;
+	}
+	return hash;
+    }
+
+}
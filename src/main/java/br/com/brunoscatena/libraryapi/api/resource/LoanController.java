@@ -1,42 +1,78 @@
 package br.com.brunoscatena.libraryapi.api.resource;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.brunoscatena.libraryapi.api.dto.CursorPageDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanBatchItemDTO;
 import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanExportDTO;
 import br.com.brunoscatena.libraryapi.api.dto.LoanFilterDTO;
+import br.com.brunoscatena.libraryapi.api.dto.ResourceVersionDTO;
 import br.com.brunoscatena.libraryapi.api.dto.ReturnedLoanDTO;
+import br.com.brunoscatena.libraryapi.api.export.ExportFormat;
+import br.com.brunoscatena.libraryapi.api.export.ExportWriter;
+import br.com.brunoscatena.libraryapi.api.mapper.LoanMapper;
+import br.com.brunoscatena.libraryapi.api.pagination.CursorCodec;
 import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
 import br.com.brunoscatena.libraryapi.model.entity.Loan;
 import br.com.brunoscatena.libraryapi.service.BookService;
+import br.com.brunoscatena.libraryapi.service.CustomerService;
 import br.com.brunoscatena.libraryapi.service.LoanService;
 import lombok.RequiredArgsConstructor;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/loans")
 @RequiredArgsConstructor
 public class LoanController {
 
+    private static final List<String> EXPORT_HEADER = Arrays.asList("id", "customer", "isbn",
+	    "loanDate", "returned");
+
     private final BookService bookService;
     private final LoanService loanService;
-    private final ModelMapper modelMapper;
+    private final CustomerService customerService;
+    private final LoanMapper loanMapper;
+    private final ObjectMapper objectMapper;
+
+    /*
+     * Upper bound of the cursor page size, the one Spring Data applies to the
+     * Pageable of the page search.
+     */
+    @Value("${spring.data.web.pageable.max-page-size:2000}")
+    private int maxPageSize;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -48,7 +84,9 @@ public class LoanController {
 
 	Loan loan = Loan.builder()
 		.book(book)
-		.customer(dto.getCustomer())
+		.customer(dto.getCustomer() == null
+			? null
+			: customerService.findOrCreate(dto.getCustomer()))
 		.loanDate(LocalDate.now())
 		.build();
 
@@ -58,27 +96,184 @@ public class LoanController {
 
     }
 
+    /**
+     * Checks out a stack of books at once. Every ISBN is resolved in one query
+     * and the loans are saved in one transaction; the response has one item per
+     * requested loan, in the same order, with the error of those not made. The
+     * customers are resolved, and the new ones created, before that transaction.
+     */
+    @PostMapping("/batch")
+    public List<LoanBatchItemDTO> createBatch(@RequestBody List<LoanDTO> dtos) {
+
+	Map<String, Book> books = bookService.findByIsbnIn(dtos.stream()
+		.map(LoanDTO::getIsbn)
+		.filter(Objects::nonNull)
+		.collect(Collectors.toSet()))
+		.stream()
+		.collect(Collectors.toMap(Book::getIsbn, Function.identity()));
+
+	Map<String, Customer> customers = customerService.findOrCreateAll(dtos.stream()
+		.filter(dto -> books.containsKey(dto.getIsbn()))
+		.map(LoanDTO::getCustomer)
+		.filter(Objects::nonNull)
+		.collect(Collectors.toSet()));
+
+	List<LoanBatchItemDTO> items = new ArrayList<>(dtos.size());
+	List<LoanBatchItemDTO> pending = new ArrayList<>(dtos.size());
+	List<Loan> loans = new ArrayList<>(dtos.size());
+	LocalDate today = LocalDate.now();
+
+	for (int i = 0; i < dtos.size(); i++) {
+	    LoanDTO dto = dtos.get(i);
+	    LoanBatchItemDTO item = LoanBatchItemDTO.builder().index(i).isbn(dto.getIsbn()).build();
+	    items.add(item);
+
+	    Book book = books.get(dto.getIsbn());
+	    if (book == null) {
+		item.setError("Book not found for passed ISBN");
+		continue;
+	    }
+
+	    pending.add(item);
+	    loans.add(Loan.builder()
+		    .book(book)
+		    .customer(customers.get(dto.getCustomer()))
+		    .loanDate(today)
+		    .build());
+	}
+
+	if (!loans.isEmpty()) {
+	    List<LoanBatchItemDTO> saved = loanService.saveAll(loans);
+	    for (int i = 0; i < pending.size(); i++) {
+		pending.get(i).setId(saved.get(i).getId());
+		pending.get(i).setError(saved.get(i).getError());
+	    }
+	}
+
+	return items;
+    }
+
+    /**
+     * Returns a stack of loans at once, by loan id.
+     */
+    @PatchMapping("/batch")
+    public List<LoanBatchItemDTO> returnBatch(@RequestBody List<Long> ids) {
+	return loanService.returnAll(ids);
+    }
+
+    /**
+     * Same conditional handling as a book: the ETag covers the loan and its
+     * book, and an unchanged pair is answered with a 304 without loading them.
+     */
+    @GetMapping("{id}")
+    public LoanDTO get(@PathVariable Long id, WebRequest request) {
+	if (ETags.isConditional(request)) {
+	    ResourceVersionDTO version = loanService.findVersion(id)
+		    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+	    if (request.checkNotModified(ETags.of(version.getVersion()),
+		    ETags.lastModified(version.getLastModified()))) {
+		return null;
+	    }
+	}
+
+	Loan loan = loanService.findById(id)
+		.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+	if (request.checkNotModified(ETags.of(versionOf(loan)),
+		ETags.lastModified(lastModifiedOf(loan)))) {
+	    return null;
+	}
+	return loanMapper.toDTO(loan);
+    }
+
+    /**
+     * A version in the body that is no longer current is answered with 409, as
+     * in BookController.update.
+     */
     @PatchMapping("{id}")
     public void returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto) {
 	Loan loan = loanService.findById(id)
 		.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 
 	loan.setReturned(dto.getReturned());
+	if (dto.getVersion() != null) {
+	    loan.setVersion(dto.getVersion());
+	}
 	loanService.update(loan);
     }
 
+    /**
+     * The loans and their books are read as DTOs, tagged like a single loan.
+     */
     @GetMapping()
-    public Page<LoanDTO> find(LoanFilterDTO dto, Pageable pageRequest) {
-	Page<Loan> result = loanService.find(dto, pageRequest);
-	List<LoanDTO> loans = result.getContent().stream().map(entity -> {
-	    Book book = entity.getBook();
-	    BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
-	    LoanDTO loanDTO = modelMapper.map(entity, LoanDTO.class);
-	    loanDTO.setBook(bookDTO);
-	    return loanDTO;
-	}).collect(Collectors.toList());
-
-	return new PageImpl<LoanDTO>(loans, pageRequest, result.getTotalElements());
+    public Page<LoanDTO> find(LoanFilterDTO dto, Pageable pageRequest, WebRequest request) {
+	Page<LoanDTO> result = loanService.findDTOs(dto, pageRequest);
+	if (request.checkNotModified(ETags.ofSlice(result, LoanDTO::getId, LoanController::versionOf))) {
+	    return null;
+	}
+	return result;
+    }
+
+    @GetMapping(params = "cursor")
+    public CursorPageDTO<LoanDTO> findAfter(LoanFilterDTO dto, @RequestParam String cursor,
+	    @RequestParam(defaultValue = "20") int size) {
+
+	if (size < 1 || size > maxPageSize) {
+	    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size");
+	}
+
+	Slice<Loan> result = loanService.findAfter(dto, CursorCodec.decode(cursor), size);
+	List<LoanDTO> loans = result.getContent()
+		.stream()
+		.map(loanMapper::toDTO)
+		.collect(Collectors.toList());
+
+	String nextCursor = result.hasNext()
+		? CursorCodec.encode(loans.get(loans.size() - 1).getId())
+		: null;
+
+	return new CursorPageDTO<LoanDTO>(loans, size, nextCursor);
+    }
+
+    /**
+     * Streams the whole loan history, ordered by id, as NDJSON (default) or CSV.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+	    @RequestParam(defaultValue = "NDJSON") ExportFormat format) {
+
+	StreamingResponseBody body = out -> {
+	    ExportWriter<LoanExportDTO> writer = ExportWriter.of(format, out, objectMapper,
+		    EXPORT_HEADER, loan -> Arrays.asList(loan.getId(), loan.getCustomer(),
+			    loan.getIsbn(), loan.getLoanDate(), loan.getReturned()));
+	    loanService.exportLoans(writer);
+	    writer.flush();
+	};
+
+	return ResponseEntity.ok()
+		.contentType(format.getMediaType())
+		.header(HttpHeaders.CONTENT_DISPOSITION,
+			"attachment; filename=\"loans." + format.getExtension() + "\"")
+		.body(body);
+    }
+
+    /*
+     * Match LoanRepository.findVersionById: the loan is shown with its book.
+     */
+    private static long versionOf(Loan loan) {
+	return ETags.versionOf(loan.getVersion()) + ETags.versionOf(loan.getBook().getVersion());
+    }
+
+    private static long versionOf(LoanDTO loan) {
+	return ETags.versionOf(loan.getVersion()) + ETags.versionOf(loan.getBook().getVersion());
+    }
+
+    private static Instant lastModifiedOf(Loan loan) {
+	Instant bookLastModified = loan.getBook().getLastModified();
+	if (loan.getLastModified() == null || bookLastModified != null
+		&& bookLastModified.isAfter(loan.getLastModified())) {
+	    return bookLastModified;
+	}
+	return loan.getLastModified();
     }
 
 }
@@ -0,0 +1,76 @@
+package br.com.brunoscatena.libraryapi.api.resource;
+
+import javax.validation.Valid;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.mapper.BookMapper;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.service.ReactiveBookService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking variant of {@link BookController}, served by WebFlux under the
+ * reactive profile. No thread waits on the database: queries run on R2DBC and
+ * the response is written as their rows arrive. Lists are
+ * streamed one book at a time, with backpressure, when the client accepts
+ * application/stream+json or text/event-stream, and collected into a JSON
+ * array otherwise.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/reactive/books")
+public class ReactiveBookController {
+
+    private ReactiveBookService bookService;
+    private BookMapper bookMapper;
+
+    public ReactiveBookController(ReactiveBookService bookService, BookMapper bookMapper) {
+	this.bookService = bookService;
+	this.bookMapper = bookMapper;
+    }
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<BookDTO> create(@RequestBody @Valid BookDTO dto) {
+	return bookService.save(bookMapper.toEntity(dto)).map(bookMapper::toDTO);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<BookDTO> get(@PathVariable Long id) {
+	return bookService.findById(id)
+		.map(bookMapper::toDTO)
+		.switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)));
+    }
+
+    @GetMapping
+    public Flux<BookDTO> find(BookDTO dto) {
+	Book filter = bookMapper.toEntity(dto);
+	filter.setLoaned(dto.getLoaned());
+	return bookService.find(filter).map(bookMapper::toDTO);
+    }
+
+    @GetMapping("/search")
+    public Flux<BookDTO> search(@RequestParam("q") String query,
+	    @RequestParam(defaultValue = "20") int size) {
+
+	if (size < 1) {
+	    return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size"));
+	}
+
+	return bookService.search(query, size).map(bookMapper::toDTO);
+    }
+
+}
@@ -0,0 +1,76 @@
+package br.com.brunoscatena.libraryapi.api.resource;
+
+import java.time.LocalDate;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanFilterDTO;
+import br.com.brunoscatena.libraryapi.api.dto.ReturnedLoanDTO;
+import br.com.brunoscatena.libraryapi.api.mapper.LoanMapper;
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
+import br.com.brunoscatena.libraryapi.model.entity.Loan;
+import br.com.brunoscatena.libraryapi.service.ReactiveBookService;
+import br.com.brunoscatena.libraryapi.service.ReactiveLoanService;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking variant of {@link LoanController}, served by WebFlux under the
+ * reactive profile.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/reactive/loans")
+@RequiredArgsConstructor
+public class ReactiveLoanController {
+
+    private final ReactiveBookService bookService;
+    private final ReactiveLoanService loanService;
+    private final LoanMapper loanMapper;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Long> create(@RequestBody LoanDTO dto) {
+	return bookService.findByIsbn(dto.getIsbn())
+		.switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+			"Book not found for passed ISBN")))
+		.map(book -> Loan.builder()
+			.book(book)
+			.customer(dto.getCustomer() == null
+				? null
+				: Customer.builder().name(dto.getCustomer()).build())
+			.loanDate(LocalDate.now())
+			.build())
+		.flatMap(loanService::save)
+		.map(Loan::getId);
+    }
+
+    @PatchMapping("{id}")
+    public Mono<Void> returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto) {
+	return loanService.findById(id)
+		.switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+		.flatMap(loan -> {
+		    loan.setReturned(dto.getReturned());
+		    return loanService.update(loan);
+		})
+		.then();
+    }
+
+    @GetMapping
+    public Flux<LoanDTO> find(LoanFilterDTO dto) {
+	return loanService.find(dto).map(loanMapper::toDTO);
+    }
+
+}
@@ -0,0 +1,38 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+/**
+ * The Caffeine caches of spring.cache.*, made transaction aware: a put or
+ * evict made inside a transaction happens after it commits. A lookup that
+ * runs while a book update is still uncommitted then can't cache the old row
+ * back after the eviction, and a rolled back write evicts nothing.
+ * <p>
+ * Cache metrics are still published per cache, the registrar unwraps the
+ * transaction aware decorators.
+ */
+@Configuration
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfiguration {
+
+    @Bean
+    public CacheManager cacheManager(CacheProperties cacheProperties) {
+	CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+	String specification = cacheProperties.getCaffeine().getSpec();
+	if (StringUtils.hasText(specification)) {
+	    cacheManager.setCacheSpecification(specification);
+	}
+	if (!cacheProperties.getCacheNames().isEmpty()) {
+	    cacheManager.setCacheNames(cacheProperties.getCacheNames());
+	}
+	return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+
+}
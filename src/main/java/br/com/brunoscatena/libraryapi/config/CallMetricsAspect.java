@@ -0,0 +1,93 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times every call to the book and loan services (library.service) and to the
+ * repositories (library.repository), tagged with the class, the method and the
+ * exception thrown, if any. The timer count doubles as the call counter.
+ * <p>
+ * The timers of successful calls are looked up once per class and method and
+ * then reused, so a call costs two map reads and the timing itself.
+ */
+@Aspect
+@Component
+public class CallMetricsAspect {
+
+    public static final String SERVICE_TIMER = "library.service";
+    public static final String REPOSITORY_TIMER = "library.repository";
+
+    private static final String NO_EXCEPTION = "none";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Timer>> timers = new ConcurrentHashMap<>();
+
+    public CallMetricsAspect(MeterRegistry meterRegistry) {
+	this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * br.com.brunoscatena.libraryapi.service.BookService+.*(..)) "
+	    + "|| execution(public * br.com.brunoscatena.libraryapi.service.LoanService+.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+	return time(SERVICE_TIMER, joinPoint.getTarget().getClass(), joinPoint);
+    }
+
+    /*
+     * Matched on the repository proxies, so the inherited JpaRepository
+     * methods are timed as well, tagged with our repository interface.
+     */
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+	return time(REPOSITORY_TIMER, joinPoint.getThis().getClass(), joinPoint);
+    }
+
+    private Object time(String name, Class<?> type, ProceedingJoinPoint joinPoint)
+	    throws Throwable {
+	Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+	long start = System.nanoTime();
+	try {
+	    Object result = joinPoint.proceed();
+	    timer(name, type, method).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+	    return result;
+	} catch (Throwable ex) {
+	    register(name, type, method, ex.getClass().getSimpleName())
+		    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+	    throw ex;
+	}
+    }
+
+    private Timer timer(String name, Class<?> type, Method method) {
+	return timers.computeIfAbsent(type, key -> new ConcurrentHashMap<>())
+		.computeIfAbsent(method, key -> register(name, type, method, NO_EXCEPTION));
+    }
+
+    private Timer register(String name, Class<?> type, Method method, String exception) {
+	return Timer.builder(name)
+		.tag("class", className(type))
+		.tag("method", method.getName())
+		.tag("exception", exception)
+		.register(meterRegistry);
+    }
+
+    private static String className(Class<?> type) {
+	for (Class<?> candidate : type.getInterfaces()) {
+	    if (candidate.getName().startsWith("br.com.brunoscatena.")) {
+		return candidate.getSimpleName();
+	    }
+	}
+	return type.getSimpleName();
+    }
+
+}
@@ -0,0 +1,51 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import br.com.brunoscatena.libraryapi.api.protobuf.ProtobufDTOHttpMessageConverter;
+
+/**
+ * Binary representations chosen by the Accept header, next to JSON:
+ * application/x-jackson-smile and application/cbor for every response and
+ * request body, and application/x-protobuf for the book and loan responses.
+ * <p>
+ * Smile and CBOR use the ObjectMapper settings of the JSON one (spring.jackson.*
+ * and the registered modules), so they carry the same fields with the same
+ * names. Declared as beans, they replace the default Smile and CBOR converters
+ * in place, after JSON. The Protobuf converter goes last, so Accept: *&#47;*
+ * keeps getting JSON.
+ */
+@Configuration
+public class MessageConverterConfiguration implements WebMvcConfigurer {
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(
+	    Jackson2ObjectMapperBuilder builder) {
+	return new MappingJackson2SmileHttpMessageConverter(
+		builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(
+	    Jackson2ObjectMapperBuilder builder) {
+	return new MappingJackson2CborHttpMessageConverter(
+		builder.factory(new CBORFactory()).build());
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+	converters.add(new ProtobufDTOHttpMessageConverter());
+    }
+
+}
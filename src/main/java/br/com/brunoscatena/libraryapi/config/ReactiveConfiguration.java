@@ -0,0 +1,60 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.config.AbstractR2dbcConfiguration;
+import org.springframework.data.r2dbc.connectionfactory.R2dbcTransactionManager;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import br.com.brunoscatena.libraryapi.model.repository.reactive.ReactiveBookRepository;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+
+/**
+ * The reactive profile: WebFlux on Netty serves the reactive controllers, and
+ * their services read and write through the R2DBC repositories on
+ * library.r2dbc.url. Spring Boot 2.2 has no R2DBC auto-configuration, so the
+ * connection factory and the repositories are set up here. The schema is still
+ * migrated by Flyway over JDBC at startup.
+ */
+@Configuration
+@Profile("reactive")
+@EnableR2dbcRepositories(basePackageClasses = ReactiveBookRepository.class)
+public class ReactiveConfiguration extends AbstractR2dbcConfiguration {
+
+    private final String url;
+
+    public ReactiveConfiguration(@Value("${library.r2dbc.url}") String url) {
+	this.url = url;
+    }
+
+    @Override
+    @Bean
+    public ConnectionFactory connectionFactory() {
+	return ConnectionFactories.get(url);
+    }
+
+    /*
+     * The R2DBC transaction manager is not a bean of its own: next to the JPA
+     * one it would leave @Transactional on the blocking services without a
+     * single transaction manager to pick.
+     */
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator(ConnectionFactory connectionFactory) {
+	return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+
+    /*
+     * Tomcat is on the classpath for the servlet stack and would otherwise be
+     * picked as the reactive server too.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+	return new NettyReactiveWebServerFactory();
+    }
+
+}
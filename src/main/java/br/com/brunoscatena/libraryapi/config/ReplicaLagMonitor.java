@@ -0,0 +1,107 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Checks how far behind the primary every replica is, every
+ * library.datasource.lag-check-interval, and publishes it as
+ * library.datasource.replica.lag. A replica whose lag hasn't been measured yet,
+ * or whose last check failed, is treated as infinitely behind, so nothing reads
+ * from it until a check succeeds.
+ * <p>
+ * The checks run on their own thread rather than through @Scheduled, because
+ * every node routes reads and library.scheduling.enabled is off on most of
+ * them.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    public static final long UNKNOWN_LAG = Long.MAX_VALUE;
+
+    private final Map<String, DataSource> replicas;
+    private final Map<String, AtomicLong> lags = new LinkedHashMap<>();
+    private final String lagQuery;
+    private final Duration interval;
+    private ScheduledExecutorService executor;
+
+    public ReplicaLagMonitor(Map<String, DataSource> replicas, String lagQuery, Duration interval,
+	    MeterRegistry meterRegistry) {
+	this.replicas = Collections.unmodifiableMap(new LinkedHashMap<>(replicas));
+	this.lagQuery = lagQuery;
+	this.interval = interval;
+
+	for (String name : this.replicas.keySet()) {
+	    AtomicLong lag = new AtomicLong(UNKNOWN_LAG);
+	    lags.put(name, lag);
+	    Gauge.builder("library.datasource.replica.lag", lag,
+		    value -> value.get() == UNKNOWN_LAG ? Double.NaN : value.get())
+		    .tag("replica", name)
+		    .baseUnit("milliseconds")
+		    .register(meterRegistry);
+	}
+    }
+
+    public Map<String, DataSource> getReplicas() {
+	return replicas;
+    }
+
+    public long lagMillis(String replica) {
+	AtomicLong lag = lags.get(replica);
+	return lag == null ? UNKNOWN_LAG : lag.get();
+    }
+
+    public void refresh() {
+	replicas.forEach((name, dataSource) -> lags.get(name).set(measure(name, dataSource)));
+    }
+
+    private long measure(String name, DataSource dataSource) {
+	try {
+	    Double seconds = new JdbcTemplate(dataSource).queryForObject(lagQuery, Double.class);
+	    if (seconds == null) {
+		log.warn("Lag check on {} returned no value, reading from the primary instead", name);
+		return UNKNOWN_LAG;
+	    }
+	    return Math.max(0L, Math.round(seconds * 1000));
+	} catch (DataAccessException ex) {
+	    log.warn("Lag check on {} failed, reading from the primary instead", name, ex);
+	    return UNKNOWN_LAG;
+	}
+    }
+
+    public void start() {
+	executor = Executors.newSingleThreadScheduledExecutor(task -> {
+	    Thread thread = new Thread(task, "replica-lag-monitor");
+	    thread.setDaemon(true);
+	    return thread;
+	});
+	executor.scheduleWithFixedDelay(this::refresh, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() throws Exception {
+	if (executor != null) {
+	    executor.shutdownNow();
+	}
+	for (DataSource dataSource : replicas.values()) {
+	    if (dataSource instanceof AutoCloseable) {
+		((AutoCloseable) dataSource).close();
+	    }
+	}
+    }
+
+}
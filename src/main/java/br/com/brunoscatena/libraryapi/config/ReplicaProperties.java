@@ -0,0 +1,47 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * The read replicas (library.datasource.replicas[n].*) and how their lag is
+ * checked. The primary is still configured through spring.datasource.
+ */
+@Data
+@ConfigurationProperties("library.datasource")
+public class ReplicaProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * Returns, as a single number, how many seconds a replica is behind its
+     * primary. On PostgreSQL, for instance: SELECT EXTRACT(EPOCH FROM now() -
+     * pg_last_xact_replay_timestamp())
+     */
+    private String lagQuery = "SELECT 0";
+
+    private Duration lagCheckInterval = Duration.ofSeconds(5);
+
+    @Data
+    public static class Replica {
+
+	private String url;
+	private String username;
+	private String password;
+	private int maximumPoolSize = 10;
+
+	/**
+	 * Runs the Flyway migrations on the replica at startup. Only for a local
+	 * stand-in that doesn't replicate: a real replica gets its schema from
+	 * its primary.
+	 */
+	private boolean migrate;
+
+    }
+
+}
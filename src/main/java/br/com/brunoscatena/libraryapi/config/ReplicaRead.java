@@ -0,0 +1,27 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a service method whose reads may be served by a replica, as long as
+ * the replica is at most {@link #maxLagMillis()} behind the primary. Without
+ * the replicas profile, or inside a read-write transaction, the method reads
+ * from the primary like any other.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReplicaRead {
+
+    /**
+     * How far behind the primary, in milliseconds, a replica may be and still
+     * serve the call. When every replica is further behind, it reads from the
+     * primary.
+     */
+    long maxLagMillis() default 5000;
+
+}
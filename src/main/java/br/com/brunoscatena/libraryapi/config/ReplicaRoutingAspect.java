@@ -0,0 +1,24 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * Lets the connections opened during a {@link ReplicaRead} method come from a
+ * replica, see ReplicaRoutingDataSource.
+ */
+@Aspect
+public class ReplicaRoutingAspect {
+
+    @Around("@annotation(replicaRead)")
+    public Object route(ProceedingJoinPoint joinPoint, ReplicaRead replicaRead) throws Throwable {
+	Long previous = ReplicaRoutingDataSource.allowReplicas(replicaRead.maxLagMillis());
+	try {
+	    return joinPoint.proceed();
+	} finally {
+	    ReplicaRoutingDataSource.restore(previous);
+	}
+    }
+
+}
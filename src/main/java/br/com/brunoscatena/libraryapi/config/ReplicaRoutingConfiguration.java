@@ -0,0 +1,91 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Read/write splitting, on with the replicas profile: {@link ReplicaRead}
+ * service methods (the book and loan lookups and searches) read from the
+ * replicas in library.datasource.replicas, everything else uses the primary
+ * configured through spring.datasource. Flyway and JPA get the routing data
+ * source, so migrations and writes always run on the primary; only a replica
+ * flagged migrate, the local stand-in, is migrated on its own.
+ * <p>
+ * Each replica has its own Hikari pool, library-replica-n, published with the
+ * same hikaricp.* metrics as library-pool.
+ */
+@Configuration
+@Profile("replicas")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class ReplicaRoutingConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+	return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public ReplicaLagMonitor replicaLagMonitor(ReplicaProperties properties,
+	    MeterRegistry meterRegistry) {
+	Map<String, DataSource> replicas = new LinkedHashMap<>();
+	List<ReplicaProperties.Replica> configured = properties.getReplicas();
+	for (int i = 0; i < configured.size(); i++) {
+	    String name = "replica-" + i;
+	    ReplicaProperties.Replica replica = configured.get(i);
+	    if (replica.isMigrate()) {
+		Flyway.configure()
+			.dataSource(replica.getUrl(), replica.getUsername(), replica.getPassword())
+			.load()
+			.migrate();
+	    }
+	    replicas.put(name, replicaPool(name, replica, meterRegistry));
+	}
+	return new ReplicaLagMonitor(replicas, properties.getLagQuery(),
+		properties.getLagCheckInterval(), meterRegistry);
+    }
+
+    private static HikariDataSource replicaPool(String name, ReplicaProperties.Replica replica,
+	    MeterRegistry meterRegistry) {
+	HikariDataSource pool = new HikariDataSource();
+	pool.setPoolName("library-" + name);
+	pool.setJdbcUrl(replica.getUrl());
+	pool.setUsername(replica.getUsername());
+	pool.setPassword(replica.getPassword());
+	pool.setMaximumPoolSize(replica.getMaximumPoolSize());
+	pool.setReadOnly(true);
+	pool.setMetricRegistry(meterRegistry);
+	return pool;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource,
+	    ReplicaLagMonitor replicaLagMonitor, MeterRegistry meterRegistry) {
+	return new LazyConnectionDataSourceProxy(
+		new ReplicaRoutingDataSource(primaryDataSource, replicaLagMonitor, meterRegistry));
+    }
+
+    @Bean
+    public ReplicaRoutingAspect replicaRoutingAspect() {
+	return new ReplicaRoutingAspect();
+    }
+
+}
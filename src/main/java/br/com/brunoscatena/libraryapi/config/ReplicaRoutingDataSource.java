@@ -0,0 +1,122 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Hands out primary connections, except inside a {@link ReplicaRead} method
+ * that isn't part of a read-write transaction: those get a connection from the
+ * next replica, round robin, that is within the method's lag tolerance, or
+ * from the primary when every replica is further behind.
+ * <p>
+ * It has to sit behind a LazyConnectionDataSourceProxy: the transaction
+ * managers ask for a connection when the transaction begins, before it is
+ * marked read-only, and the proxy delays the choice until the first statement.
+ * <p>
+ * Every choice is counted as library.datasource.routes, tagged with the data
+ * source and the reason: required (a write, or a read that isn't a
+ * {@link ReplicaRead} or runs in a read-write transaction), read (served by a
+ * replica) or lagging (a read sent to the primary because the replicas were too
+ * far behind).
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private static final String ROUTES = "library.datasource.routes";
+    private static final ThreadLocal<Long> MAX_LAG = new ThreadLocal<>();
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final List<String> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Counter required;
+    private final Counter lagging;
+    private final Map<String, Counter> reads = new HashMap<>();
+
+    public ReplicaRoutingDataSource(DataSource primary, ReplicaLagMonitor lagMonitor,
+	    MeterRegistry meterRegistry) {
+	this.lagMonitor = lagMonitor;
+	this.replicas = new ArrayList<>(lagMonitor.getReplicas().keySet());
+
+	Map<Object, Object> targets = new HashMap<>(lagMonitor.getReplicas());
+	targets.put(PRIMARY, primary);
+	setTargetDataSources(targets);
+	setDefaultTargetDataSource(primary);
+	afterPropertiesSet();
+
+	this.required = counter(meterRegistry, PRIMARY, "required");
+	this.lagging = counter(meterRegistry, PRIMARY, "lagging");
+	for (String replica : replicas) {
+	    reads.put(replica, counter(meterRegistry, replica, "read"));
+	}
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String target, String reason) {
+	return Counter.builder(ROUTES)
+		.tag("target", target)
+		.tag("reason", reason)
+		.register(meterRegistry);
+    }
+
+    /**
+     * Lets the current thread read from replicas at most maxLagMillis behind,
+     * or keeps the tighter tolerance of an enclosing call. Returns what to pass
+     * to {@link #restore(Long)} afterwards.
+     */
+    static Long allowReplicas(long maxLagMillis) {
+	Long previous = MAX_LAG.get();
+	MAX_LAG.set(previous == null ? maxLagMillis : Math.min(previous, maxLagMillis));
+	return previous;
+    }
+
+    static void restore(Long previous) {
+	if (previous == null) {
+	    MAX_LAG.remove();
+	} else {
+	    MAX_LAG.set(previous);
+	}
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+	Long maxLag = MAX_LAG.get();
+	if (maxLag == null || replicas.isEmpty() || inReadWriteTransaction()) {
+	    required.increment();
+	    return PRIMARY;
+	}
+
+	int start = next.getAndIncrement();
+	for (int i = 0; i < replicas.size(); i++) {
+	    String replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+	    if (lagMonitor.lagMillis(replica) <= maxLag) {
+		reads.get(replica).increment();
+		return replica;
+	    }
+	}
+
+	lagging.increment();
+	return PRIMARY;
+    }
+
+    /*
+     * A read inside a read-write transaction must see that transaction's own
+     * writes, which only the primary has.
+     */
+    private static boolean inReadWriteTransaction() {
+	return TransactionSynchronizationManager.isActualTransactionActive()
+		&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+}
@@ -0,0 +1,16 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Background jobs (the overdue loan sweep in OverdueLoanScanner). Turned off
+ * with library.scheduling.enabled=false, for instance on all but one node.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "library.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfiguration {
+
+}
@@ -0,0 +1,56 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Runs every servlet request, and the services it calls, on its own virtual
+ * thread instead of the fixed Tomcat pool, so a request blocked on JDBC no
+ * longer holds one of its 200 threads. Async MVC work (the exports) runs on
+ * virtual threads as well.
+ * <p>
+ * Virtual threads need Java 21 or later at runtime. The build still targets
+ * Java 8, so the executor is looked up reflectively, and the application fails
+ * to start if the mode is enabled on an older JDK. With this mode on, the
+ * Hikari pool (spring.datasource.hikari.maximum-pool-size) becomes the
+ * concurrency limit for database work instead of server.tomcat.max-threads.
+ * <p>
+ * Spring Boot 3.2 and later support this natively through
+ * spring.threads.virtual.enabled. That upgrade needs Java 17 and the
+ * javax to jakarta package move; after it, this class can be deleted.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfiguration implements WebMvcConfigurer {
+
+    @Bean
+    public ExecutorService virtualThreadExecutor() {
+	try {
+	    Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+	    return (ExecutorService) factory.invoke(null);
+	} catch (ReflectiveOperationException ex) {
+	    throw new IllegalStateException("library.threads.virtual.enabled requires Java 21 or "
+		    + "later, running on " + System.getProperty("java.version"), ex);
+	}
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+	return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor());
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+	configurer.setTaskExecutor(new ConcurrentTaskExecutor(virtualThreadExecutor()));
+    }
+
+}
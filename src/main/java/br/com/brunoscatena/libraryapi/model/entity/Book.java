@@ -1,24 +1,55 @@
 package br.com.brunoscatena.libraryapi.model.entity;
 
+import java.time.Instant;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
+import br.com.brunoscatena.libraryapi.model.listener.BookIndexListener;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Book.CACHE_REGION)
+@DynamicUpdate
+@EntityListeners(BookIndexListener.class)
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_book_isbn", columnNames = "isbn"),
+	indexes = @Index(name = "idx_book_loaned", columnList = "loaned, id"))
 public class Book {
 
+    /**
+     * Second-level cache region of the books. Hibernate updates it on save and
+     * delete, and empties it after the loaned flag bulk updates, which it can't
+     * track row by row.
+     */
+    public static final String CACHE_REGION = "book";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Long id;
 
     private String title;
@@ -26,4 +57,36 @@ public class Book {
     private String author;
 
     private String isbn;
+
+    /**
+     * True while the book has an open loan. Only changed by the bulk updates in
+     * {@link br.com.brunoscatena.libraryapi.model.repository.BookRepository},
+     * so a stale copy saved through the book API can't overwrite it.
+     */
+    @Column(nullable = false, updatable = false)
+    private Boolean loaned;
+
+    /**
+     * Bumped on every change, including the loaned flag updates, which bump it
+     * themselves since they bypass Hibernate.
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(nullable = false)
+    private Instant lastModified;
+
+    @PrePersist
+    void prePersist() {
+	if (loaned == null) {
+	    loaned = false;
+	}
+	lastModified = Instant.now();
+    }
+
+    @PreUpdate
+    void preUpdate() {
+	lastModified = Instant.now();
+    }
 }
@@ -1,34 +1,62 @@
 package br.com.brunoscatena.libraryapi.model.entity;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.Period;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.DynamicUpdate;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @Entity
+@DynamicUpdate
+@Table(indexes = {
+	@Index(name = "idx_loan_book_returned", columnList = "book_id, returned"),
+	@Index(name = "idx_loan_customer_id", columnList = "customer_id, id"),
+	@Index(name = "idx_loan_open_due_date", columnList = "open_due_date, id") })
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 public class Loan {
 
+    public static final Period LOAN_PERIOD = Period.ofDays(14);
+
     @Id
     @Column
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
 
-    @Column(length = 100)
-    private String customer;
+    /**
+     * Resolved by CustomerService before the loan is saved. Lazy: the queries
+     * that show the loan join it, and the loan search only filters on its id.
+     */
+    @JoinColumn
+    @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Customer customer;
 
     @JoinColumn
     @ManyToOne
@@ -37,7 +65,40 @@ public class Loan {
     @Column
     private LocalDate loanDate;
 
+    @Column
+    private LocalDate dueDate;
+
+    @Column
+    private LocalDate returnDate;
+
     @Column
     private Boolean returned;
 
+    /**
+     * The due date while the loan is open, NULL once returned. Generated by the
+     * database (see V7__add_loan_due_and_return_dates), only read by queries.
+     */
+    @Column(insertable = false, updatable = false)
+    private LocalDate openDueDate;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(nullable = false)
+    private Instant lastModified;
+
+    @PrePersist
+    void prePersist() {
+	if (dueDate == null && loanDate != null) {
+	    dueDate = loanDate.plus(LOAN_PERIOD);
+	}
+	lastModified = Instant.now();
+    }
+
+    @PreUpdate
+    void preUpdate() {
+	lastModified = Instant.now();
+    }
+
 }
@@ -0,0 +1,53 @@
+package br.com.brunoscatena.libraryapi.model.listener;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.service.BookSearchService;
+
+/**
+ * Keeps the search index in step with every write that goes through JPA. The
+ * index is only touched after commit, so rolled back writes never show up in
+ * searches. When there is no search service (repository slices in tests, for
+ * instance) the listener does nothing.
+ */
+public class BookIndexListener {
+
+    private final ObjectProvider<BookSearchService> searchService;
+
+    public BookIndexListener(ObjectProvider<BookSearchService> searchService) {
+	this.searchService = searchService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Book book) {
+	afterCommit(() -> searchService.ifAvailable(service -> service.index(book)));
+    }
+
+    @PostRemove
+    public void onRemove(Book book) {
+	afterCommit(() -> searchService.ifAvailable(service -> service.remove(book)));
+    }
+
+    private void afterCommit(Runnable action) {
+	if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+	    action.run();
+	    return;
+	}
+
+	TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+	    @Override
+	    public void afterCommit() {
+		action.run();
+	    }
+	});
+    }
+
+}
@@ -1,13 +1,130 @@
 package br.com.brunoscatena.libraryapi.model.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.ResourceVersionDTO;
 import br.com.brunoscatena.libraryapi.model.entity.Book;
 
 public interface BookRepository extends JpaRepository<Book, Long> {
-    boolean existsByIsbn(String isbn);
+
+    // @formatter:off
+    /**
+     * Same semantics as the example matcher used by the book search: every
+     * informed property must contain the value, ignoring case.
+     */
+    String FILTER = "( :title IS NULL OR LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%')) ) "
+	    +   "AND ( :author IS NULL OR LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%')) ) "
+	    +   "AND ( :isbn IS NULL OR LOWER(b.isbn) LIKE LOWER(CONCAT('%', :isbn, '%')) ) "
+	    +   "AND ( :loaned IS NULL OR b.loaned = :loaned ) ";
+    // @formatter:on
+
+    String SELECT_DTO = "SELECT new br.com.brunoscatena.libraryapi.api.dto.BookDTO("
+	    + "b.id, b.title, b.author, b.isbn, b.loaned, b.version) FROM Book b ";
 
     Optional<Book> findByIsbn(String isbn);
+
+    @Query(value = "SELECT b.id FROM Book b WHERE b.isbn = :isbn")
+    Optional<Long> findIdByIsbn(@Param("isbn") String isbn);
+
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    /*
+     * Locks the rows until commit, in id order so two batches sharing books
+     * queue behind each other instead of deadlocking.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = "SELECT b FROM Book b WHERE b.id IN :ids ORDER BY b.id")
+    List<Book> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "SELECT new br.com.brunoscatena.libraryapi.api.dto.ResourceVersionDTO("
+	    + "b.version, b.lastModified) FROM Book b WHERE b.id = :id")
+    Optional<ResourceVersionDTO> findVersionById(@Param("id") Long id);
+
+    /**
+     * Marks the book as loaned unless it already is; 0 means someone else has
+     * it.
+     */
+    // @formatter:off
+    @Modifying
+    @Query(value =  "UPDATE Book b "
+	    	+    "SET b.loaned = true, b.version = b.version + 1, b.lastModified = CURRENT_TIMESTAMP "
+	    	+    "WHERE b.id = :id AND b.loaned = false")
+    int markLoaned(@Param("id") Long id);
+
+    @Modifying
+    @Query(value =  "UPDATE Book b "
+	    	+    "SET b.loaned = :loaned, b.version = b.version + 1, b.lastModified = CURRENT_TIMESTAMP "
+	    	+    "WHERE b.id IN :ids")
+    int updateLoaned(@Param("ids") Collection<Long> ids, @Param("loaned") boolean loaned);
+    // @formatter:on
+
+    @Query(value = "SELECT b.isbn FROM Book b WHERE b.isbn IN :isbns")
+    List<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    /*
+     * Forward-only cursor over the whole catalog for the export. Rows are read
+     * as DTOs, so they don't pile up in the persistence context, and the fetch
+     * size keeps the driver from buffering the full result. The stream must be
+     * consumed inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = SELECT_DTO + "ORDER BY b.id")
+    Stream<BookDTO> streamAllForExport();
+
+    /*
+     * The search read straight into DTOs: nothing enters the persistence
+     * context, so there is no entity, snapshot or dirty check per row.
+     */
+    @Query(value = SELECT_DTO + "WHERE " + FILTER,
+	    countQuery = "SELECT COUNT(b) FROM Book b WHERE " + FILTER)
+    Page<BookDTO> findDTOs(@Param("title") String title,
+	    @Param("author") String author,
+	    @Param("isbn") String isbn,
+	    @Param("loaned") Boolean loaned,
+	    Pageable pageRequest);
+
+    @Query(value = SELECT_DTO + "WHERE " + FILTER)
+    Slice<BookDTO> findDTOSlice(@Param("title") String title,
+	    @Param("author") String author,
+	    @Param("isbn") String isbn,
+	    @Param("loaned") Boolean loaned,
+	    Pageable pageRequest);
+
+    @Query(value = "SELECT COUNT(b) FROM Book b WHERE " + FILTER)
+    long countByFilter(@Param("title") String title,
+	    @Param("author") String author,
+	    @Param("isbn") String isbn,
+	    @Param("loaned") Boolean loaned);
+
+    // @formatter:off
+    @Query(value = "SELECT b FROM Book b "
+	    +      "WHERE b.id > :lastId "
+	    +      "AND " + FILTER
+	    +      "ORDER BY b.id")
+    Slice<Book> findAfter(@Param("title") String title,
+	    @Param("author") String author,
+	    @Param("isbn") String isbn,
+	    @Param("loaned") Boolean loaned,
+	    @Param("lastId") Long lastId,
+	    Pageable pageRequest);
+    // @formatter:on
 }
@@ -0,0 +1,22 @@
+package br.com.brunoscatena.libraryapi.model.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
+
+public interface CustomerRepository extends JpaRepository<Customer, Long> {
+
+    @Query(value = "SELECT c.id FROM Customer c WHERE c.name = :name")
+    Optional<Long> findIdByName(@Param("name") String name);
+
+    Optional<Customer> findByName(String name);
+
+    List<Customer> findByNameIn(Collection<String> names);
+
+}
@@ -1,27 +1,164 @@
 package br.com.brunoscatena.libraryapi.model.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
-import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanExportDTO;
+import br.com.brunoscatena.libraryapi.api.dto.OverdueLoanDTO;
+import br.com.brunoscatena.libraryapi.api.dto.ResourceVersionDTO;
 import br.com.brunoscatena.libraryapi.model.entity.Loan;
 
 public interface LoanRepository extends JpaRepository<Loan, Long> {
 
+    /*
+     * A single loan is read to be shown or returned, with its book and
+     * customer.
+     */
+    @Override
+    @EntityGraph(attributePaths = { "book", "customer" })
+    Optional<Loan> findById(Long id);
+
+    /*
+     * A loan is shown with its book, so the representation changes when
+     * either does: the newer of the two changes and the sum of both versions.
+     */
+    // @formatter:off
+    @Query(value =  "SELECT new br.com.brunoscatena.libraryapi.api.dto.ResourceVersionDTO("
+	    	+        "l.version + b.version, "
+	    	+        "CASE WHEN l.lastModified > b.lastModified THEN l.lastModified ELSE b.lastModified END) "
+	    	+    "FROM Loan l "
+	    	+    "JOIN l.book b "
+	    	+    "WHERE l.id = :id")
+    Optional<ResourceVersionDTO> findVersionById(@Param("id") Long id);
+    // @formatter:on
+
+    /*
+     * Returned flag as committed, for telling whether an update moves the loan
+     * between open and returned.
+     */
+    @Query(value = "SELECT l.returned FROM Loan l WHERE l.id = :id")
+    Optional<Boolean> findReturnedById(@Param("id") Long id);
+
+    @Query(value = "SELECT l FROM Loan l JOIN FETCH l.book WHERE l.id IN :ids")
+    List<Loan> findAllWithBookById(@Param("ids") Collection<Long> ids);
+
+    /*
+     * The loan search, one query per filter, read straight into DTOs, each
+     * with its book and customer name, from one join each and without managing
+     * any entity. An OR
+     * of the isbn and customer filters across the book join can't use either
+     * index and scans the whole loan history, so LoanServiceImpl resolves each
+     * filter to its key and searches loan (book_id) or loan (customer_id, id)
+     * on its own. With both filters, the head of each side up to the end of
+     * the page is read in id order and the two are merged.
+     */
+    // @formatter:off
+    String SELECT_DTO = "SELECT new br.com.brunoscatena.libraryapi.api.dto.LoanDTO("
+	    	+        "l.id, c.name, l.dueDate, l.returnDate, l.version, "
+	    	+        "b.id, b.title, b.author, b.isbn, b.loaned, b.version) "
+	    	+    "FROM Loan l "
+	    	+    "JOIN l.book b "
+	    	+    "LEFT JOIN l.customer c ";
+
+    @Query(value = SELECT_DTO + "WHERE l.book.id = :bookId",
+	    countQuery = "SELECT COUNT(l) FROM Loan l WHERE l.book.id = :bookId")
+    Page<LoanDTO> findDTOsByBookId(@Param("bookId") Long bookId, Pageable pageRequest);
+
+    @Query(value = SELECT_DTO + "WHERE l.customer.id = :customerId",
+	    countQuery = "SELECT COUNT(l) FROM Loan l WHERE l.customer.id = :customerId")
+    Page<LoanDTO> findDTOsByCustomerId(@Param("customerId") Long customerId, Pageable pageRequest);
+
+    @Query(value = SELECT_DTO, countQuery = "SELECT COUNT(l) FROM Loan l")
+    Page<LoanDTO> findAllDTOs(Pageable pageRequest);
+    // @formatter:on
+
+    /*
+     * Loans matched by both filters, counted twice when the totals of the two
+     * sides are added.
+     */
+    long countByBookIdAndCustomerId(Long bookId, Long customerId);
+
+    /*
+     * Keyset pages of the same searches, merged by LoanServiceImpl when both
+     * filters are given.
+     */
     // @formatter:off
-    @Query(value =  "SELECT "
-	    	+        "CASE "
-	    	+            "WHEN ( COUNT(l.id) > 0 ) THEN true "
-	    	+ 	     "ELSE false "
-	    	+        "END "	    	
+    @Query(value =  "SELECT l FROM Loan l "
+	    	+    "JOIN FETCH l.book "
+	    	+    "LEFT JOIN FETCH l.customer "
+	    	+    "WHERE l.id > :lastId "
+	    	+    "ORDER BY l.id")
+    Slice<Loan> findAfter(@Param("lastId") Long lastId, Pageable pageRequest);
+
+    @Query(value =  "SELECT l FROM Loan l "
+	    	+    "JOIN FETCH l.book "
+	    	+    "LEFT JOIN FETCH l.customer "
+	    	+    "WHERE l.book.id = :bookId AND l.id > :lastId "
+	    	+    "ORDER BY l.id")
+    Slice<Loan> findAfterByBookId(@Param("bookId") Long bookId,
+	    @Param("lastId") Long lastId,
+	    Pageable pageRequest);
+
+    @Query(value =  "SELECT l FROM Loan l "
+	    	+    "JOIN FETCH l.book "
+	    	+    "LEFT JOIN FETCH l.customer "
+	    	+    "WHERE l.customer.id = :customerId AND l.id > :lastId "
+	    	+    "ORDER BY l.id")
+    Slice<Loan> findAfterByCustomerId(@Param("customerId") Long customerId,
+	    @Param("lastId") Long lastId,
+	    Pageable pageRequest);
+    // @formatter:on
+
+    /*
+     * Loan history export, one flat row per loan read through a forward-only
+     * cursor. Must be consumed inside a transaction and closed.
+     */
+    // @formatter:off
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(value =  "SELECT new br.com.brunoscatena.libraryapi.api.dto.LoanExportDTO("
+	    	+        "l.id, c.name, b.isbn, l.loanDate, l.returned) "
 	    	+    "FROM Loan l "
-	    	+    "WHERE l.book = :book "
-	    	+    "AND ( l.returned is null or l.returned is false )")
-    boolean existsByBookIdAndNotReturned(@Param("book") Book book);
+	    	+    "JOIN l.book b "
+	    	+    "LEFT JOIN l.customer c "
+	    	+    "ORDER BY l.id")
+    Stream<LoanExportDTO> streamAllForExport();
     // @formatter:on
 
-    Page<Loan> findByBookIsbnOrCustomer(String isbn, String customer, Pageable pageRequest);
+    /*
+     * Open loans due before today, after the (due date, id) of the last one
+     * seen. A range over idx_loan_open_due_date: returned loans are not in it,
+     * and each chunk starts where the previous one ended.
+     */
+    // @formatter:off
+    @Query(value =  "SELECT new br.com.brunoscatena.libraryapi.api.dto.OverdueLoanDTO("
+	    	+        "l.id, c.name, b.isbn, l.openDueDate) "
+	    	+    "FROM Loan l "
+	    	+    "JOIN l.book b "
+	    	+    "LEFT JOIN l.customer c "
+	    	+    "WHERE l.openDueDate < :today "
+	    	+    "AND ( l.openDueDate > :lastDueDate "
+	    	+          "OR ( l.openDueDate = :lastDueDate AND l.id > :lastId ) ) "
+	    	+    "ORDER BY l.openDueDate, l.id")
+    Slice<OverdueLoanDTO> findOverdueAfter(@Param("today") LocalDate today,
+	    @Param("lastDueDate") LocalDate lastDueDate,
+	    @Param("lastId") Long lastId,
+	    Pageable pageRequest);
+    // @formatter:on
 }
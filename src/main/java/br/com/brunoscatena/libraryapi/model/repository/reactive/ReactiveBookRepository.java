@@ -0,0 +1,85 @@
+package br.com.brunoscatena.libraryapi.model.repository.reactive;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import br.com.brunoscatena.libraryapi.model.row.BookRow;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC access to the book table for the reactive profile, with the same rules
+ * as BookRepository: the loaned flag only changes through the conditional
+ * updates below, and every write bumps version and last_modified.
+ */
+public interface ReactiveBookRepository extends ReactiveCrudRepository<BookRow, Long> {
+
+    // @formatter:off
+    /**
+     * Same semantics as BookRepository.FILTER.
+     */
+    String FILTER = "( :title IS NULL OR LOWER(title) LIKE LOWER(CONCAT('%', :title, '%')) ) "
+	    +   "AND ( :author IS NULL OR LOWER(author) LIKE LOWER(CONCAT('%', :author, '%')) ) "
+	    +   "AND ( :isbn IS NULL OR LOWER(isbn) LIKE LOWER(CONCAT('%', :isbn, '%')) ) "
+	    +   "AND ( :loaned IS NULL OR loaned = :loaned ) ";
+    // @formatter:on
+
+    String COLUMNS = "id, title, author, isbn, loaned, version";
+
+    /**
+     * An id of its own from book_seq. Hibernate reads each value of the
+     * sequence as the upper end of a block of ids, so taking the value itself
+     * never collides with the ids it hands out.
+     */
+    @Query("SELECT NEXT VALUE FOR book_seq")
+    Mono<Long> nextId();
+
+    /*
+     * loaned, version and last_modified take their column defaults.
+     */
+    @Modifying
+    @Query("INSERT INTO book (id, title, author, isbn) VALUES (:id, :title, :author, :isbn)")
+    Mono<Integer> insert(@Param("id") Long id,
+	    @Param("title") String title,
+	    @Param("author") String author,
+	    @Param("isbn") String isbn);
+
+    @Query("SELECT " + COLUMNS + " FROM book WHERE isbn = :isbn")
+    Mono<BookRow> findByIsbn(@Param("isbn") String isbn);
+
+    @Query("SELECT id FROM book WHERE isbn = :isbn")
+    Mono<Long> findIdByIsbn(@Param("isbn") String isbn);
+
+    // @formatter:off
+    @Query(value = "SELECT " + COLUMNS + " FROM book "
+	    +      "WHERE id > :lastId "
+	    +      "AND " + FILTER
+	    +      "ORDER BY id "
+	    +      "LIMIT :limit")
+    Flux<BookRow> findAfter(@Param("title") String title,
+	    @Param("author") String author,
+	    @Param("isbn") String isbn,
+	    @Param("loaned") Boolean loaned,
+	    @Param("lastId") Long lastId,
+	    @Param("limit") int limit);
+
+    /**
+     * Marks the book as loaned unless it already is; 0 means someone else has
+     * it.
+     */
+    @Modifying
+    @Query(value =  "UPDATE book "
+	    	+    "SET loaned = TRUE, version = version + 1, last_modified = CURRENT_TIMESTAMP "
+	    	+    "WHERE id = :id AND loaned = FALSE")
+    Mono<Integer> markLoaned(@Param("id") Long id);
+
+    @Modifying
+    @Query(value =  "UPDATE book "
+	    	+    "SET loaned = :loaned, version = version + 1, last_modified = CURRENT_TIMESTAMP "
+	    	+    "WHERE id = :id")
+    Mono<Integer> updateLoaned(@Param("id") Long id, @Param("loaned") boolean loaned);
+    // @formatter:on
+
+}
@@ -0,0 +1,23 @@
+package br.com.brunoscatena.libraryapi.model.repository.reactive;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import br.com.brunoscatena.libraryapi.model.row.CustomerRow;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveCustomerRepository extends ReactiveCrudRepository<CustomerRow, Long> {
+
+    @Query("SELECT id, name FROM customer WHERE name = :name")
+    Mono<CustomerRow> findByName(@Param("name") String name);
+
+    /*
+     * The id comes from the identity column; read the row back by name.
+     */
+    @Modifying
+    @Query("INSERT INTO customer (name) VALUES (:name)")
+    Mono<Integer> insert(@Param("name") String name);
+
+}
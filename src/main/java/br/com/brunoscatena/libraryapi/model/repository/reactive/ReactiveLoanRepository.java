@@ -0,0 +1,81 @@
+package br.com.brunoscatena.libraryapi.model.repository.reactive;
+
+import java.time.LocalDate;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import br.com.brunoscatena.libraryapi.model.row.LoanRow;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC access to the loan table for the reactive profile. Like
+ * LoanRepository, the searches are keyset pages in id order, one query per
+ * indexed key.
+ */
+public interface ReactiveLoanRepository extends ReactiveCrudRepository<LoanRow, Long> {
+
+    String COLUMNS = "id, book_id, customer_id, loan_date, due_date, return_date, returned, version";
+
+    /**
+     * Same numbering rule as ReactiveBookRepository.nextId, on loan_seq.
+     */
+    @Query("SELECT NEXT VALUE FOR loan_seq")
+    Mono<Long> nextId();
+
+    // @formatter:off
+    @Modifying
+    @Query(value =  "INSERT INTO loan (id, book_id, customer_id, loan_date, due_date) "
+	    	+    "VALUES (:id, :bookId, :customerId, :loanDate, :dueDate)")
+    Mono<Integer> insert(@Param("id") Long id,
+	    @Param("bookId") Long bookId,
+	    @Param("customerId") Long customerId,
+	    @Param("loanDate") LocalDate loanDate,
+	    @Param("dueDate") LocalDate dueDate);
+
+    /**
+     * Writes the return state of the loan if it is still at the given version;
+     * 0 means it was changed by someone else since it was read.
+     */
+    @Modifying
+    @Query(value =  "UPDATE loan "
+	    	+    "SET returned = :returned, return_date = :returnDate, "
+	    	+        "version = version + 1, last_modified = CURRENT_TIMESTAMP "
+	    	+    "WHERE id = :id AND version = :version")
+    Mono<Integer> updateReturned(@Param("id") Long id,
+	    @Param("version") Long version,
+	    @Param("returned") Boolean returned,
+	    @Param("returnDate") LocalDate returnDate);
+    // @formatter:on
+
+    @Query("SELECT returned FROM loan WHERE id = :id")
+    Mono<Boolean> findReturnedById(@Param("id") Long id);
+
+    // @formatter:off
+    @Query(value =  "SELECT " + COLUMNS + " FROM loan "
+	    	+    "WHERE id > :lastId "
+	    	+    "ORDER BY id "
+	    	+    "LIMIT :limit")
+    Flux<LoanRow> findAfter(@Param("lastId") Long lastId, @Param("limit") int limit);
+
+    @Query(value =  "SELECT " + COLUMNS + " FROM loan "
+	    	+    "WHERE book_id = :bookId AND id > :lastId "
+	    	+    "ORDER BY id "
+	    	+    "LIMIT :limit")
+    Flux<LoanRow> findAfterByBookId(@Param("bookId") Long bookId,
+	    @Param("lastId") Long lastId,
+	    @Param("limit") int limit);
+
+    @Query(value =  "SELECT " + COLUMNS + " FROM loan "
+	    	+    "WHERE customer_id = :customerId AND id > :lastId "
+	    	+    "ORDER BY id "
+	    	+    "LIMIT :limit")
+    Flux<LoanRow> findAfterByCustomerId(@Param("customerId") Long customerId,
+	    @Param("lastId") Long lastId,
+	    @Param("limit") int limit);
+    // @formatter:on
+
+}
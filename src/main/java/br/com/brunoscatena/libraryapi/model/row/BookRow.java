@@ -0,0 +1,48 @@
+package br.com.brunoscatena.libraryapi.model.row;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A book row as read by the R2DBC repositories of the reactive profile. The
+ * table is the one mapped by {@link Book}; writes go through the queries of
+ * ReactiveBookRepository, which keep its columns as JPA does.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("book")
+public class BookRow {
+
+    @Id
+    private Long id;
+
+    private String title;
+
+    private String author;
+
+    private String isbn;
+
+    private Boolean loaned;
+
+    private Long version;
+
+    public Book toBook() {
+	return Book.builder()
+		.id(id)
+		.title(title)
+		.author(author)
+		.isbn(isbn)
+		.loaned(loaned)
+		.version(version)
+		.build();
+    }
+
+}
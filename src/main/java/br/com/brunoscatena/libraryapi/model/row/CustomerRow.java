@@ -0,0 +1,31 @@
+package br.com.brunoscatena.libraryapi.model.row;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A customer row as read by the R2DBC repositories of the reactive profile.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("customer")
+public class CustomerRow {
+
+    @Id
+    private Long id;
+
+    private String name;
+
+    public Customer toCustomer() {
+	return Customer.builder().id(id).name(name).build();
+    }
+
+}
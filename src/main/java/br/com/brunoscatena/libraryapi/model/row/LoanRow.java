@@ -0,0 +1,58 @@
+package br.com.brunoscatena.libraryapi.model.row;
+
+import java.time.LocalDate;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
+import br.com.brunoscatena.libraryapi.model.entity.Loan;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A loan row as read by the R2DBC repositories of the reactive profile. The
+ * book and the customer are kept as ids; the reactive services read them with
+ * one query per page of loans.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("loan")
+public class LoanRow {
+
+    @Id
+    private Long id;
+
+    private Long bookId;
+
+    private Long customerId;
+
+    private LocalDate loanDate;
+
+    private LocalDate dueDate;
+
+    private LocalDate returnDate;
+
+    private Boolean returned;
+
+    private Long version;
+
+    public Loan toLoan(Book book, Customer customer) {
+	return Loan.builder()
+		.id(id)
+		.book(book)
+		.customer(customer)
+		.loanDate(loanDate)
+		.dueDate(dueDate)
+		.returnDate(returnDate)
+		.returned(returned)
+		.version(version)
+		.build();
+    }
+
+}
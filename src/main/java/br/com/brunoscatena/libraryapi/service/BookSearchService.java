@@ -0,0 +1,17 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import java.util.List;
+
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+
+public interface BookSearchService {
+
+    List<Book> search(String query, int limit);
+
+    void index(Book book);
+
+    void remove(Book book);
+
+    void rebuild();
+
+}
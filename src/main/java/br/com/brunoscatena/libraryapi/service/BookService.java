@@ -1,10 +1,16 @@
 package br.com.brunoscatena.libraryapi.service;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.BookImportResultDTO;
+import br.com.brunoscatena.libraryapi.api.dto.ResourceVersionDTO;
 import br.com.brunoscatena.libraryapi.model.entity.Book;
 
 public interface BookService {
@@ -12,11 +18,28 @@ public interface BookService {
 
     Optional<Book> findById(Long id);
 
+    /**
+     * Current version of the book, read from the database without loading it.
+     */
+    Optional<ResourceVersionDTO> findVersion(Long id);
+
     void delete(Book book);
 
     Book update(Book book);
 
-    Page<Book> find(Book book, Pageable pageRequest);
+    /**
+     * The book search, read as DTOs without loading the books. The count mode
+     * tells whether the total is counted, estimated or left out.
+     */
+    Slice<BookDTO> findDTOs(Book filter, Pageable pageRequest, CountMode countMode);
 
     Optional<Book> findByIsbn(String isbn);
+
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    Slice<Book> findAfter(Book filter, Long lastId, int size);
+
+    BookImportResultDTO importBooks(List<Book> books);
+
+    void exportBooks(Consumer<BookDTO> consumer);
 }
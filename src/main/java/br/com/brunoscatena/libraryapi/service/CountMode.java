@@ -0,0 +1,17 @@
+package br.com.brunoscatena.libraryapi.service;
+
+/**
+ * How the total of a paged search is obtained.
+ */
+public enum CountMode {
+
+    /** No count query, the result is a slice that only knows if there is a next page. */
+    NONE,
+
+    /** Count query on every request. */
+    EXACT,
+
+    /** Count served from a short lived cache keyed by the filter. */
+    ESTIMATED
+
+}
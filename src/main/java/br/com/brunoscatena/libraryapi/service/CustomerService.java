@@ -0,0 +1,21 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
+
+public interface CustomerService {
+
+    /**
+     * The customer with this name, created when seen for the first time.
+     */
+    Customer findOrCreate(String name);
+
+    /**
+     * The customers with these names, keyed by name, creating those not seen
+     * before.
+     */
+    Map<String, Customer> findOrCreateAll(Collection<String> names);
+
+}
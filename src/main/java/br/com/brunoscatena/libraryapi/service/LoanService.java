@@ -1,11 +1,18 @@
 package br.com.brunoscatena.libraryapi.service;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import br.com.brunoscatena.libraryapi.api.dto.LoanBatchItemDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanExportDTO;
 import br.com.brunoscatena.libraryapi.api.dto.LoanFilterDTO;
+import br.com.brunoscatena.libraryapi.api.dto.ResourceVersionDTO;
 import br.com.brunoscatena.libraryapi.model.entity.Loan;
 
 public interface LoanService {
@@ -14,8 +21,33 @@ public interface LoanService {
 
     Optional<Loan> findById(Long id);
 
+    /**
+     * Current version of the loan as shown with its book, without loading
+     * either.
+     */
+    Optional<ResourceVersionDTO> findVersion(Long id);
+
     Loan update(Loan loan);
 
-    Page<Loan> find(LoanFilterDTO loan, Pageable pageRequest);
+    /**
+     * Saves the loans that can be made and reports one item per loan, in the
+     * same order.
+     */
+    List<LoanBatchItemDTO> saveAll(List<Loan> loans);
+
+    /**
+     * Marks the loans as returned and reports one item per id, in the same
+     * order.
+     */
+    List<LoanBatchItemDTO> returnAll(List<Long> ids);
+
+    /**
+     * The loan search, read as DTOs without loading the loans or their books.
+     */
+    Page<LoanDTO> findDTOs(LoanFilterDTO filter, Pageable pageRequest);
+
+    Slice<Loan> findAfter(LoanFilterDTO filter, Long lastId, int size);
+
+    void exportLoans(Consumer<LoanExportDTO> consumer);
 
 }
@@ -0,0 +1,15 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import java.util.List;
+
+import br.com.brunoscatena.libraryapi.api.dto.OverdueLoanDTO;
+
+/**
+ * Receives the overdue loans found by a sweep, one chunk at a time. Picked
+ * with library.loans.overdue.sink.
+ */
+public interface OverdueNotificationSink {
+
+    void send(List<OverdueLoanDTO> loans);
+
+}
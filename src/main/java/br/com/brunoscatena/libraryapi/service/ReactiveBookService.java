@@ -0,0 +1,23 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveBookService {
+
+    Mono<Book> save(Book book);
+
+    Mono<Book> findById(Long id);
+
+    Mono<Book> findByIsbn(String isbn);
+
+    /**
+     * Every book matching the filter, ordered by id. Pages are read only as the
+     * subscriber requests more books.
+     */
+    Flux<Book> find(Book filter);
+
+    Flux<Book> search(String text, int limit);
+
+}
@@ -0,0 +1,22 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import br.com.brunoscatena.libraryapi.api.dto.LoanFilterDTO;
+import br.com.brunoscatena.libraryapi.model.entity.Loan;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveLoanService {
+
+    Mono<Loan> save(Loan loan);
+
+    Mono<Loan> findById(Long id);
+
+    Mono<Loan> update(Loan loan);
+
+    /**
+     * Every loan matching the filter, ordered by id. Pages are read only as the
+     * subscriber requests more loans.
+     */
+    Flux<Loan> find(LoanFilterDTO filter);
+
+}
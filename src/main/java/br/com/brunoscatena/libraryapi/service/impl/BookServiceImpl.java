@@ -1,40 +1,118 @@
 package br.com.brunoscatena.libraryapi.service.impl;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-import org.springframework.data.domain.Example;
-import org.springframework.data.domain.ExampleMatcher;
-import org.springframework.data.domain.ExampleMatcher.StringMatcher;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.BookImportErrorDTO;
+import br.com.brunoscatena.libraryapi.api.dto.BookImportResultDTO;
+import br.com.brunoscatena.libraryapi.api.dto.ResourceVersionDTO;
+import br.com.brunoscatena.libraryapi.config.ReplicaRead;
 import br.com.brunoscatena.libraryapi.exception.BusinessException;
 import br.com.brunoscatena.libraryapi.model.entity.Book;
 import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
 import br.com.brunoscatena.libraryapi.service.BookService;
+import br.com.brunoscatena.libraryapi.service.CountMode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 
+@Service
 public class BookServiceImpl implements BookService {
 
+    public static final String BOOKS_BY_ISBN_CACHE = "booksByIsbn";
+
+    private static final Duration DEFAULT_COUNT_TTL = Duration.ofSeconds(30);
+    private static final int MAX_CACHED_COUNTS = 1000;
+    private static final String ISBN_CONSTRAINT = "uk_book_isbn";
+    private static final int ISBN_LOOKUP_BATCH_SIZE = 1000;
+
     private BookRepository repository;
+    private Cache<List<Object>, Long> countCache;
+    private Rejections rejections;
 
     public BookServiceImpl(BookRepository repository) {
+	this(repository, DEFAULT_COUNT_TTL, Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public BookServiceImpl(BookRepository repository,
+	    @Value("${library.search.count-cache-ttl:30s}") Duration countCacheTtl,
+	    MeterRegistry meterRegistry) {
 	this.repository = repository;
+	this.countCache = Caffeine.newBuilder()
+		.expireAfterWrite(countCacheTtl)
+		.maximumSize(MAX_CACHED_COUNTS)
+		.build();
+	this.rejections = new Rejections(meterRegistry);
     }
 
     @Override
     public Book save(Book book) {
-	if (repository.existsByIsbn(book.getIsbn())) {
-	    throw new BusinessException("ISBN already being used");
+	try {
+	    return repository.saveAndFlush(book);
+	} catch (DataIntegrityViolationException ex) {
+	    throw translate(ex);
+	}
+    }
+
+    private RuntimeException translate(DataIntegrityViolationException ex) {
+	if (ConstraintViolations.isViolationOf(ex, ISBN_CONSTRAINT)) {
+	    rejections.duplicateIsbn();
+	    return new BusinessException("ISBN already being used");
 	}
-	return repository.save(book);
+	return ex;
     }
 
+    /*
+     * Read through the second-level cache (Book.CACHE_REGION), which is the
+     * only cache of books by id. Misses read from the primary: a row read from
+     * a lagging replica would be cached from before the write that changed it.
+     */
     @Override
     public Optional<Book> findById(Long id) {
 	return repository.findById(id);
     }
 
+    /*
+     * Not cached: it is what tells a client whether its copy is current.
+     */
+    @Override
+    public Optional<ResourceVersionDTO> findVersion(Long id) {
+	return repository.findVersionById(id);
+    }
+
+    /*
+     * Evicted once the write is done, and after commit when it runs in a
+     * caller's transaction (CacheConfiguration), so a concurrent lookup can't
+     * cache the row from before the write.
+     */
     @Override
+    @CacheEvict(cacheNames = BOOKS_BY_ISBN_CACHE, allEntries = true)
     public void delete(Book book) {
 	if (book == null || book.getId() == null) {
 	    throw new IllegalArgumentException("Can't delete book with null id");
@@ -43,29 +121,156 @@ public class BookServiceImpl implements BookService {
 	repository.delete(book);
     }
 
+    /*
+     * The ISBN may have changed, and its previous value is unknown here, so
+     * the whole ISBN cache is dropped.
+     */
     @Override
+    @CacheEvict(cacheNames = BOOKS_BY_ISBN_CACHE, allEntries = true)
     public Book update(Book book) {
 	if (book == null || book.getId() == null) {
 	    throw new IllegalArgumentException("Can't update book with null id");
 	}
 
-	return repository.save(book);
+	try {
+	    return repository.saveAndFlush(book);
+	} catch (DataIntegrityViolationException ex) {
+	    throw translate(ex);
+	}
     }
 
     @Override
-    public Page<Book> find(Book filter, Pageable pageRequest) {
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public Slice<BookDTO> findDTOs(Book filter, Pageable pageRequest, CountMode countMode) {
 
-	Example<Book> bookEx = Example.of(filter,
-		ExampleMatcher.matching()
-			.withIgnoreCase()
-			.withIgnoreNullValues()
-			.withStringMatcher(StringMatcher.CONTAINING));
+	switch (countMode) {
+	case NONE:
+	    return findDTOSlice(filter, pageRequest);
+	case ESTIMATED:
+	    Slice<BookDTO> slice = findDTOSlice(filter, pageRequest);
+	    return new PageImpl<BookDTO>(slice.getContent(), pageRequest, estimatedCount(filter));
+	default:
+	    return repository.findDTOs(filter.getTitle(), filter.getAuthor(), filter.getIsbn(),
+		    filter.getLoaned(), pageRequest);
+	}
+    }
+
+    private Slice<BookDTO> findDTOSlice(Book filter, Pageable pageRequest) {
+	return repository.findDTOSlice(filter.getTitle(), filter.getAuthor(), filter.getIsbn(),
+		filter.getLoaned(), pageRequest);
+    }
+
+    private long estimatedCount(Book filter) {
+	return countCache.get(countKey(filter), key -> repository.countByFilter(filter.getTitle(),
+		filter.getAuthor(), filter.getIsbn(), filter.getLoaned()));
+    }
 
-	return repository.findAll(bookEx, pageRequest);
+    /*
+     * The filter values themselves, so a missing filter (null) stays apart
+     * from any text a client can search for.
+     */
+    private List<Object> countKey(Book filter) {
+	return Arrays.asList(lowerCase(filter.getTitle()), lowerCase(filter.getAuthor()),
+		lowerCase(filter.getIsbn()), filter.getLoaned());
+    }
+
+    private static String lowerCase(String value) {
+	return value == null ? null : value.toLowerCase();
     }
 
     @Override
+    @Cacheable(cacheNames = BOOKS_BY_ISBN_CACHE, key = "#isbn", unless = "#result == null")
     public Optional<Book> findByIsbn(String isbn) {
 	return repository.findByIsbn(isbn);
     }
+
+    @Override
+    public List<Book> findByIsbnIn(Collection<String> isbns) {
+	if (isbns.isEmpty()) {
+	    return new ArrayList<>();
+	}
+	return repository.findByIsbnIn(isbns);
+    }
+
+    @Override
+    @ReplicaRead
+    public Slice<Book> findAfter(Book filter, Long lastId, int size) {
+	return repository.findAfter(filter.getTitle(), filter.getAuthor(), filter.getIsbn(),
+		filter.getLoaned(), lastId == null ? 0L : lastId, PageRequest.of(0, size));
+    }
+
+    /*
+     * Rows are checked in memory, existing ISBNs are looked up with one IN
+     * query per thousand rows and the remaining books are inserted in JDBC
+     * batches (hibernate.jdbc.batch_size) when the transaction flushes.
+     */
+    @Override
+    @Transactional
+    public BookImportResultDTO importBooks(List<Book> books) {
+	List<BookImportErrorDTO> errors = new ArrayList<>();
+	List<Integer> acceptedRows = new ArrayList<>(books.size());
+	Set<String> isbns = new LinkedHashSet<>();
+
+	for (int row = 0; row < books.size(); row++) {
+	    Book book = books.get(row);
+	    if (book == null || isEmpty(book.getTitle()) || isEmpty(book.getAuthor())
+		    || isEmpty(book.getIsbn())) {
+		errors.add(new BookImportErrorDTO(row, book == null ? null : book.getIsbn(),
+			"Title, author and ISBN are required"));
+	    } else if (!isbns.add(book.getIsbn())) {
+		rejections.duplicateIsbn();
+		errors.add(new BookImportErrorDTO(row, book.getIsbn(), "Duplicated ISBN in import"));
+	    } else {
+		acceptedRows.add(row);
+	    }
+	}
+
+	Set<String> existingIsbns = findExistingIsbns(new ArrayList<>(isbns));
+
+	List<Book> newBooks = new ArrayList<>(acceptedRows.size());
+	for (int row : acceptedRows) {
+	    Book book = books.get(row);
+	    if (existingIsbns.contains(book.getIsbn())) {
+		rejections.duplicateIsbn();
+		errors.add(new BookImportErrorDTO(row, book.getIsbn(), "ISBN already being used"));
+	    } else {
+		book.setId(null);
+		newBooks.add(book);
+	    }
+	}
+
+	try {
+	    repository.saveAll(newBooks);
+	    repository.flush();
+	} catch (DataIntegrityViolationException ex) {
+	    // another request inserted one of these ISBNs after the lookup
+	    throw translate(ex);
+	}
+
+	errors.sort(Comparator.comparingInt(BookImportErrorDTO::getRow));
+	return new BookImportResultDTO(newBooks.size(), errors);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBooks(Consumer<BookDTO> consumer) {
+	try (Stream<BookDTO> books = repository.streamAllForExport()) {
+	    books.forEach(consumer);
+	}
+    }
+
+    private Set<String> findExistingIsbns(List<String> isbns) {
+	Set<String> existing = new HashSet<>();
+	for (int from = 0; from < isbns.size(); from += ISBN_LOOKUP_BATCH_SIZE) {
+	    List<String> batch = isbns.subList(from,
+		    Math.min(from + ISBN_LOOKUP_BATCH_SIZE, isbns.size()));
+	    existing.addAll(repository.findExistingIsbns(batch));
+	}
+	return existing;
+    }
+
+    private boolean isEmpty(String value) {
+	return value == null || value.isEmpty();
+    }
 }
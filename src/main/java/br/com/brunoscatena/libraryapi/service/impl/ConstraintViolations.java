@@ -0,0 +1,31 @@
+package br.com.brunoscatena.libraryapi.service.impl;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * Tells which database constraint rejected a write, so services can turn it
+ * into the matching business error.
+ */
+final class ConstraintViolations {
+
+    private ConstraintViolations() {
+    }
+
+    static boolean isViolationOf(DataIntegrityViolationException ex, String constraint) {
+	Throwable cause = ex;
+	while (cause != null) {
+	    if (cause instanceof ConstraintViolationException
+		    && contains(((ConstraintViolationException) cause).getConstraintName(), constraint)) {
+		return true;
+	    }
+	    cause = cause.getCause();
+	}
+	return contains(ex.getMessage(), constraint);
+    }
+
+    private static boolean contains(String text, String constraint) {
+	return text != null && text.toLowerCase().contains(constraint);
+    }
+
+}
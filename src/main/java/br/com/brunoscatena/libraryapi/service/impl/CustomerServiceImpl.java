@@ -0,0 +1,73 @@
+package br.com.brunoscatena.libraryapi.service.impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
+import br.com.brunoscatena.libraryapi.model.repository.CustomerRepository;
+import br.com.brunoscatena.libraryapi.service.CustomerService;
+
+/*
+ * Not transactional: the customer is resolved before the loan transaction
+ * starts, so each lookup and insert holds a connection only while it runs and
+ * a loan never waits for a second one.
+ */
+@Service
+public class CustomerServiceImpl implements CustomerService {
+
+    private static final String CUSTOMER_NAME_CONSTRAINT = "uk_customer_name";
+
+    private CustomerRepository repository;
+
+    public CustomerServiceImpl(CustomerRepository repository) {
+	super();
+	this.repository = repository;
+    }
+
+    @Override
+    public Customer findOrCreate(String name) {
+	return repository.findByName(name).orElseGet(() -> create(name));
+    }
+
+    @Override
+    public Map<String, Customer> findOrCreateAll(Collection<String> names) {
+	if (names.isEmpty()) {
+	    return new HashMap<>();
+	}
+
+	Map<String, Customer> customers = repository.findByNameIn(names)
+		.stream()
+		.collect(Collectors.toMap(Customer::getName, Function.identity()));
+
+	for (String name : names) {
+	    if (!customers.containsKey(name)) {
+		customers.put(name, create(name));
+	    }
+	}
+	return customers;
+    }
+
+    /*
+     * When a concurrent first loan of the same customer inserted the name
+     * first, the insert fails on uk_customer_name and the committed customer
+     * is read instead. A customer created for a loan that then fails stays,
+     * unused until their next loan.
+     */
+    private Customer create(String name) {
+	try {
+	    return repository.saveAndFlush(Customer.builder().name(name).build());
+	} catch (DataIntegrityViolationException ex) {
+	    if (!ConstraintViolations.isViolationOf(ex, CUSTOMER_NAME_CONSTRAINT)) {
+		throw ex;
+	    }
+	    return repository.findByName(name).orElseThrow(() -> ex);
+	}
+    }
+
+}
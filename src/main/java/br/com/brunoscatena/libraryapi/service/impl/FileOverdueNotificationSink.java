@@ -0,0 +1,58 @@
+package br.com.brunoscatena.libraryapi.service.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import br.com.brunoscatena.libraryapi.api.dto.OverdueLoanDTO;
+import br.com.brunoscatena.libraryapi.service.OverdueNotificationSink;
+
+/**
+ * Appends each chunk to an NDJSON file, one line per overdue loan, for a mail
+ * or messaging job to pick up. The file is opened once per chunk, not once per
+ * loan, and the lines of a chunk are written through one buffer.
+ */
+@Service
+@ConditionalOnProperty(name = "library.loans.overdue.sink", havingValue = "file")
+public class FileOverdueNotificationSink implements OverdueNotificationSink {
+
+    private final Path file;
+    private final ObjectWriter loanWriter;
+
+    public FileOverdueNotificationSink(@Value("${library.loans.overdue.file}") String file,
+	    ObjectMapper objectMapper) {
+	this.file = Paths.get(file);
+	this.loanWriter = objectMapper.writerFor(OverdueLoanDTO.class)
+		.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+		.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Override
+    public synchronized void send(List<OverdueLoanDTO> loans) {
+	try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+		StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+	    for (OverdueLoanDTO loan : loans) {
+		loanWriter.writeValue(out, loan);
+		out.write('\n');
+	    }
+	} catch (IOException ex) {
+	    throw new UncheckedIOException(ex);
+	}
+    }
+
+}
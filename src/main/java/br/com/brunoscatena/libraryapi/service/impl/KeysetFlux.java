@@ -0,0 +1,33 @@
+package br.com.brunoscatena.libraryapi.service.impl;
+
+import java.util.List;
+import java.util.function.Function;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Turns a keyset query into a Flux of its rows, page after page. A page is
+ * queried once the subscriber starts on the previous one, so at most one page
+ * is read ahead of what it has consumed, however long the result.
+ */
+final class KeysetFlux {
+
+    private KeysetFlux() {
+    }
+
+    /**
+     * pageAfter reads up to pageSize values after the given id; a shorter page
+     * is the last one.
+     */
+    static <T> Flux<T> of(Function<Long, Mono<List<T>>> pageAfter, Function<T, Long> idOf,
+	    int pageSize) {
+
+	return Mono.defer(() -> pageAfter.apply(0L))
+		.expand(page -> page.size() < pageSize
+			? Mono.empty()
+			: pageAfter.apply(idOf.apply(page.get(page.size() - 1))))
+		.concatMapIterable(page -> page, 1);
+    }
+
+}
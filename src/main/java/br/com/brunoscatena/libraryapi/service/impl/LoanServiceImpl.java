@@ -1,53 +1,401 @@
 package br.com.brunoscatena.libraryapi.service.impl;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import br.com.brunoscatena.libraryapi.api.dto.LoanBatchItemDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanExportDTO;
 import br.com.brunoscatena.libraryapi.api.dto.LoanFilterDTO;
+import br.com.brunoscatena.libraryapi.api.dto.ResourceVersionDTO;
+import br.com.brunoscatena.libraryapi.config.ReplicaRead;
 import br.com.brunoscatena.libraryapi.exception.BusinessException;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
 import br.com.brunoscatena.libraryapi.model.entity.Loan;
+import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
+import br.com.brunoscatena.libraryapi.model.repository.CustomerRepository;
 import br.com.brunoscatena.libraryapi.model.repository.LoanRepository;
 import br.com.brunoscatena.libraryapi.service.LoanService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 
 @Service
 public class LoanServiceImpl implements LoanService {
 
+    private static final String ACTIVE_LOAN_CONSTRAINT = "uk_loan_active_book";
+
+    /**
+     * Deepest offset of a search by both isbn and customer: each side is read
+     * from its start up to the end of the page, so deeper pages are left to the
+     * cursor search.
+     */
+    static final int MAX_MERGED_OFFSET = 10_000;
+
     private LoanRepository loanRepository;
+    private BookRepository bookRepository;
+    private CustomerRepository customerRepository;
+    private Rejections rejections;
+
+    public LoanServiceImpl(LoanRepository loanRepository, BookRepository bookRepository,
+	    CustomerRepository customerRepository) {
+	this(loanRepository, bookRepository, customerRepository, Metrics.globalRegistry);
+    }
 
     @Autowired
-    public LoanServiceImpl(LoanRepository loanRepository) {
+    public LoanServiceImpl(LoanRepository loanRepository, BookRepository bookRepository,
+	    CustomerRepository customerRepository, MeterRegistry meterRegistry) {
 	super();
 	this.loanRepository = loanRepository;
+	this.bookRepository = bookRepository;
+	this.customerRepository = customerRepository;
+	this.rejections = new Rejections(meterRegistry);
     }
 
+    /*
+     * The book row is flagged first: the conditional update is a keyed write
+     * that fails (0 rows) when the book is already loaned, and it holds the
+     * row lock until commit so concurrent checkouts of the same book queue
+     * behind it. The unique index on open loans stays as the last guard. The
+     * customer was resolved by the caller, so this transaction holds a single
+     * connection.
+     */
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = BookServiceImpl.BOOKS_BY_ISBN_CACHE, key = "#loan.book.isbn",
+	    condition = "#loan.book.isbn != null")
     public Loan save(Loan loan) {
-
-	if (loanRepository.existsByBookIdAndNotReturned(loan.getBook())) {
+	if (bookRepository.markLoaned(loan.getBook().getId()) == 0) {
+	    rejections.alreadyLoaned();
 	    throw new BusinessException("Book already loaned");
 	}
 
-	return loanRepository.save(loan);
+	try {
+	    return loanRepository.saveAndFlush(loan);
+	} catch (DataIntegrityViolationException ex) {
+	    throw translate(ex);
+	}
     }
 
+    private RuntimeException translate(DataIntegrityViolationException ex) {
+	if (ConstraintViolations.isViolationOf(ex, ACTIVE_LOAN_CONSTRAINT)) {
+	    rejections.alreadyLoaned();
+	    return new BusinessException("Book already loaned");
+	}
+	return ex;
+    }
+
+    /*
+     * A loan is usually read right before it is returned, which needs its
+     * current version, so only a nearly current replica will do.
+     */
     @Override
+    @ReplicaRead(maxLagMillis = 1000)
     public Optional<Loan> findById(Long id) {
 	return loanRepository.findById(id);
     }
 
     @Override
+    public Optional<ResourceVersionDTO> findVersion(Long id) {
+	return loanRepository.findVersionById(id);
+    }
+
+    /*
+     * The loaned flag of the book only changes when the loan moves between
+     * open and returned. Returning a loan again is rejected like in returnAll:
+     * by then the book may be loaned to someone else. Reopening a returned
+     * loan takes the book back through the same conditional update as a
+     * checkout.
+     */
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = BookServiceImpl.BOOKS_BY_ISBN_CACHE, key = "#loan.book.isbn",
+	    condition = "#loan.book.isbn != null")
     public Loan update(Loan loan) {
-	return loanRepository.save(loan);
+	boolean returned = Boolean.TRUE.equals(loan.getReturned());
+	boolean wasReturned = loanRepository.findReturnedById(loan.getId()).orElse(false);
+
+	if (returned && wasReturned) {
+	    rejections.alreadyReturned();
+	    throw new BusinessException("Loan already returned");
+	}
+	if (!returned && wasReturned && bookRepository.markLoaned(loan.getBook().getId()) == 0) {
+	    rejections.alreadyLoaned();
+	    throw new BusinessException("Book already loaned");
+	}
+
+	if (!returned) {
+	    loan.setReturnDate(null);
+	} else if (loan.getReturnDate() == null) {
+	    loan.setReturnDate(LocalDate.now());
+	}
+
+	Loan saved;
+	try {
+	    saved = loanRepository.saveAndFlush(loan);
+	} catch (DataIntegrityViolationException ex) {
+	    throw translate(ex);
+	}
+
+	if (returned) {
+	    bookRepository.updateLoaned(Collections.singleton(loan.getBook().getId()), false);
+	}
+	return saved;
+    }
+
+    /*
+     * The books of the batch are locked in one query and the free ones are
+     * flagged with one update, so a book loaned meanwhile by a concurrent
+     * request rejects its own item only. Books repeated in the batch are
+     * rejected after their first loan, and the accepted loans are inserted in
+     * JDBC batches on flush.
+     */
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = BookServiceImpl.BOOKS_BY_ISBN_CACHE, allEntries = true)
+    public List<LoanBatchItemDTO> saveAll(List<Loan> loans) {
+	Set<Long> freeBookIds = loans.isEmpty()
+		? new HashSet<>()
+		: bookRepository.findAllByIdForUpdate(loans.stream()
+			.map(loan -> loan.getBook().getId())
+			.collect(Collectors.toSet()))
+			.stream()
+			.filter(book -> !Boolean.TRUE.equals(book.getLoaned()))
+			.map(Book::getId)
+			.collect(Collectors.toSet());
+
+	Set<Long> loanedBookIds = new HashSet<>();
+	List<LoanBatchItemDTO> items = new ArrayList<>(loans.size());
+	List<Loan> newLoans = new ArrayList<>(loans.size());
+	for (int i = 0; i < loans.size(); i++) {
+	    Loan loan = loans.get(i);
+	    LoanBatchItemDTO item = LoanBatchItemDTO.builder()
+		    .index(i)
+		    .isbn(loan.getBook().getIsbn())
+		    .build();
+
+	    Long bookId = loan.getBook().getId();
+	    if (freeBookIds.contains(bookId) && loanedBookIds.add(bookId)) {
+		newLoans.add(loan);
+	    } else {
+		rejections.alreadyLoaned();
+		item.setError("Book already loaned");
+	    }
+	    items.add(item);
+	}
+
+	if (!loanedBookIds.isEmpty()) {
+	    bookRepository.updateLoaned(loanedBookIds, true);
+	}
+
+	try {
+	    loanRepository.saveAll(newLoans);
+	    loanRepository.flush();
+	} catch (DataIntegrityViolationException ex) {
+	    throw translate(ex);
+	}
+
+	for (int i = 0; i < loans.size(); i++) {
+	    items.get(i).setId(loans.get(i).getId());
+	}
+	return items;
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = BookServiceImpl.BOOKS_BY_ISBN_CACHE, allEntries = true)
+    public List<LoanBatchItemDTO> returnAll(List<Long> ids) {
+	Map<Long, Loan> loans = ids.isEmpty()
+		? new HashMap<>()
+		: loanRepository.findAllWithBookById(ids)
+			.stream()
+			.collect(Collectors.toMap(Loan::getId, Function.identity()));
+
+	List<LoanBatchItemDTO> items = new ArrayList<>(ids.size());
+	List<Long> returnedBookIds = new ArrayList<>(ids.size());
+	LocalDate today = LocalDate.now();
+	for (int i = 0; i < ids.size(); i++) {
+	    Loan loan = loans.get(ids.get(i));
+	    LoanBatchItemDTO item = LoanBatchItemDTO.builder().index(i).id(ids.get(i)).build();
+
+	    if (loan == null) {
+		item.setError("Loan not found");
+	    } else {
+		item.setIsbn(loan.getBook().getIsbn());
+		if (Boolean.TRUE.equals(loan.getReturned())) {
+		    rejections.alreadyReturned();
+		    item.setError("Loan already returned");
+		} else {
+		    loan.setReturned(true);
+		    loan.setReturnDate(today);
+		    returnedBookIds.add(loan.getBook().getId());
+		}
+	    }
+	    items.add(item);
+	}
+
+	if (!returnedBookIds.isEmpty()) {
+	    bookRepository.updateLoaned(returnedBookIds, false);
+	}
+	loanRepository.flush();
+	return items;
+    }
+
+    /*
+     * Each filter is resolved to its key through a unique index (book isbn,
+     * customer name) and searched on its own loan index. With both filters,
+     * each side is read in id order up to the end of the requested page and
+     * the two are merged, so the work is bounded by the page position rather
+     * than by the loan history; the union is in id order, so no other sort is
+     * accepted, and pages past MAX_MERGED_OFFSET are refused. Its total is the
+     * two totals less the loans counted on both sides.
+     */
+    @Override
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public Page<LoanDTO> findDTOs(LoanFilterDTO dto, Pageable pageRequest) {
+
+	if (dto.getIsbn() == null && dto.getCustomer() == null) {
+	    return loanRepository.findAllDTOs(pageRequest);
+	}
+
+	Optional<Long> bookId = bookId(dto);
+	Optional<Long> customerId = customerId(dto);
+
+	if (bookId.isPresent() && customerId.isPresent()) {
+	    if (!isIdOrder(pageRequest.getSort())) {
+		throw new BusinessException("Loans searched by isbn and customer are sorted by id only");
+	    }
+	    if (pageRequest.getOffset() > MAX_MERGED_OFFSET) {
+		throw new BusinessException(
+			"Page too deep for a search by isbn and customer, use the cursor search");
+	    }
+
+	    PageRequest head = PageRequest.of(0,
+		    Math.toIntExact(pageRequest.getOffset() + pageRequest.getPageSize()), Sort.by("id"));
+	    Page<LoanDTO> ofBook = loanRepository.findDTOsByBookId(bookId.get(), head);
+	    Page<LoanDTO> ofCustomer = loanRepository.findDTOsByCustomerId(customerId.get(), head);
+
+	    List<LoanDTO> content = mergeById(ofBook.getContent(), ofCustomer.getContent(),
+		    LoanDTO::getId)
+		    .stream()
+		    .skip(pageRequest.getOffset())
+		    .limit(pageRequest.getPageSize())
+		    .collect(Collectors.toList());
+	    long total = ofBook.getTotalElements() + ofCustomer.getTotalElements()
+		    - loanRepository.countByBookIdAndCustomerId(bookId.get(), customerId.get());
+	    return new PageImpl<LoanDTO>(content, pageRequest, total);
+	}
+	if (bookId.isPresent()) {
+	    return loanRepository.findDTOsByBookId(bookId.get(), pageRequest);
+	}
+	if (customerId.isPresent()) {
+	    return loanRepository.findDTOsByCustomerId(customerId.get(), pageRequest);
+	}
+	return Page.empty(pageRequest);
+    }
+
+    private static boolean isIdOrder(Sort sort) {
+	return sort.isUnsorted() || sort.equals(Sort.by("id"));
+    }
+
+    private Optional<Long> bookId(LoanFilterDTO dto) {
+	return dto.getIsbn() == null ? Optional.empty() : bookRepository.findIdByIsbn(dto.getIsbn());
+    }
+
+    private Optional<Long> customerId(LoanFilterDTO dto) {
+	return dto.getCustomer() == null
+		? Optional.empty()
+		: customerRepository.findIdByName(dto.getCustomer());
     }
 
+    /*
+     * With both filters, the next keyset page of each side is read and the two
+     * are merged by id: the first size loans of the union are among the first
+     * size of each side.
+     */
     @Override
-    public Page<Loan> find(LoanFilterDTO dto, Pageable pageRequest) {
-	return loanRepository.findByBookIsbnOrCustomer(dto.getIsbn(), dto.getCustomer(),
-		pageRequest);
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public Slice<Loan> findAfter(LoanFilterDTO dto, Long lastId, int size) {
+	long after = lastId == null ? 0L : lastId;
+	PageRequest pageRequest = PageRequest.of(0, size);
+
+	if (dto.getIsbn() == null && dto.getCustomer() == null) {
+	    return loanRepository.findAfter(after, pageRequest);
+	}
+
+	Optional<Long> bookId = bookId(dto);
+	Optional<Long> customerId = customerId(dto);
+
+	if (bookId.isPresent() && customerId.isPresent()) {
+	    Slice<Loan> byBook = loanRepository.findAfterByBookId(bookId.get(), after, pageRequest);
+	    Slice<Loan> byCustomer = loanRepository.findAfterByCustomerId(customerId.get(), after,
+		    pageRequest);
+	    return merge(byBook, byCustomer, pageRequest);
+	}
+	if (bookId.isPresent()) {
+	    return loanRepository.findAfterByBookId(bookId.get(), after, pageRequest);
+	}
+	if (customerId.isPresent()) {
+	    return loanRepository.findAfterByCustomerId(customerId.get(), after, pageRequest);
+	}
+	return new SliceImpl<Loan>(Collections.emptyList(), pageRequest, false);
+    }
+
+    private static Slice<Loan> merge(Slice<Loan> first, Slice<Loan> second,
+	    PageRequest pageRequest) {
+	List<Loan> loans = mergeById(first.getContent(), second.getContent(), Loan::getId);
+
+	List<Loan> content = loans.stream()
+		.limit(pageRequest.getPageSize())
+		.collect(Collectors.toList());
+	boolean hasNext = loans.size() > pageRequest.getPageSize() || first.hasNext()
+		|| second.hasNext();
+	return new SliceImpl<Loan>(content, pageRequest, hasNext);
+    }
+
+    /*
+     * Union of two lists already in id order, in id order, each loan once.
+     */
+    private static <T> List<T> mergeById(List<T> first, List<T> second, ToLongFunction<T> id) {
+	TreeMap<Long, T> merged = new TreeMap<>();
+	first.forEach(value -> merged.put(id.applyAsLong(value), value));
+	second.forEach(value -> merged.putIfAbsent(id.applyAsLong(value), value));
+	return new ArrayList<>(merged.values());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportLoans(Consumer<LoanExportDTO> consumer) {
+	try (Stream<LoanExportDTO> loans = loanRepository.streamAllForExport()) {
+	    loans.forEach(consumer);
+	}
     }
 
 }
@@ -0,0 +1,25 @@
+package br.com.brunoscatena.libraryapi.service.impl;
+
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import br.com.brunoscatena.libraryapi.api.dto.OverdueLoanDTO;
+import br.com.brunoscatena.libraryapi.service.OverdueNotificationSink;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "library.loans.overdue.sink", havingValue = "log", matchIfMissing = true)
+public class LoggingOverdueNotificationSink implements OverdueNotificationSink {
+
+    @Override
+    public void send(List<OverdueLoanDTO> loans) {
+	for (OverdueLoanDTO loan : loans) {
+	    log.info("Overdue loan {}: {} has {} since {}", loan.getId(), loan.getCustomer(),
+		    loan.getIsbn(), loan.getDueDate());
+	}
+    }
+
+}
@@ -0,0 +1,244 @@
+package br.com.brunoscatena.libraryapi.service.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+
+import br.com.brunoscatena.libraryapi.exception.BusinessException;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
+import br.com.brunoscatena.libraryapi.service.BookSearchService;
+
+/**
+ * Embedded Lucene index of the catalog. Title, author and ISBN are stored in
+ * the index, so a search is answered without touching the database. The index
+ * lives in memory unless library.search.index-path is set. It is built from
+ * the database when the application starts with an empty index, a new one or
+ * the in-memory one; an index kept on disk is reused as it is.
+ */
+@Service
+public class LuceneBookSearchService implements BookSearchService {
+
+    private static final String ID = "id";
+    private static final String TITLE = "title";
+    private static final String AUTHOR = "author";
+    private static final String ISBN = "isbn";
+    private static final String[] SEARCH_FIELDS = { TITLE, AUTHOR, ISBN };
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final BookRepository repository;
+    private final Analyzer analyzer;
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final AtomicBoolean stale = new AtomicBoolean();
+    private final Object writeLock = new Object();
+
+    /*
+     * Ids written by index() or remove() while a rebuild runs. Those writes
+     * come from committed changes at least as new as the rows the rebuild read,
+     * so the rebuild leaves their documents alone.
+     */
+    private volatile Set<Long> writtenDuringRebuild;
+
+    public LuceneBookSearchService(BookRepository repository,
+	    @Value("${library.search.index-path:}") String indexPath) {
+	this.repository = repository;
+	this.analyzer = new StandardAnalyzer();
+	try {
+	    this.directory = indexPath.isEmpty()
+		    ? new ByteBuffersDirectory()
+		    : FSDirectory.open(Paths.get(indexPath));
+	    this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+	    this.searcherManager = new SearcherManager(writer, null);
+	} catch (IOException ex) {
+	    throw new UncheckedIOException("Can't open book search index", ex);
+	}
+    }
+
+    @Override
+    public List<Book> search(String text, int limit) {
+	if (text == null || text.trim().isEmpty()) {
+	    return Collections.emptyList();
+	}
+
+	Query query = parse(text);
+
+	try {
+	    // reopening the reader once per search, rather than once per write,
+	    // keeps bulk imports from paying for a refresh on every book
+	    if (stale.getAndSet(false)) {
+		searcherManager.maybeRefreshBlocking();
+	    }
+
+	    IndexSearcher searcher = searcherManager.acquire();
+	    try {
+		TopDocs topDocs = searcher.search(query, limit);
+		List<Book> books = new ArrayList<>(topDocs.scoreDocs.length);
+		for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+		    books.add(toBook(searcher.doc(scoreDoc.doc)));
+		}
+		return books;
+	    } finally {
+		searcherManager.release(searcher);
+	    }
+	} catch (IOException ex) {
+	    throw new UncheckedIOException(ex);
+	}
+    }
+
+    @Override
+    public void index(Book book) {
+	try {
+	    synchronized (writeLock) {
+		written(book);
+		writer.updateDocument(term(book), toDocument(book));
+	    }
+	    stale.set(true);
+	} catch (IOException ex) {
+	    throw new UncheckedIOException(ex);
+	}
+    }
+
+    @Override
+    public void remove(Book book) {
+	try {
+	    synchronized (writeLock) {
+		written(book);
+		writer.deleteDocuments(term(book));
+	    }
+	    stale.set(true);
+	} catch (IOException ex) {
+	    throw new UncheckedIOException(ex);
+	}
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+	if (writer.getDocStats().numDocs == 0) {
+	    rebuild();
+	}
+    }
+
+    /*
+     * Every book is written over its own document, so the index stays
+     * searchable meanwhile and nothing is added twice. A book indexed or
+     * removed through the listener after the walk read it keeps the
+     * listener's version. Documents of books deleted outside the application
+     * are not dropped.
+     */
+    @Override
+    public void rebuild() {
+	writtenDuringRebuild = ConcurrentHashMap.newKeySet();
+	try {
+	    long lastId = 0L;
+	    Slice<Book> slice;
+	    do {
+		slice = repository.findAfter(null, null, null, null, lastId,
+			PageRequest.of(0, REBUILD_BATCH_SIZE));
+		synchronized (writeLock) {
+		    for (Book book : slice) {
+			if (!writtenDuringRebuild.contains(book.getId())) {
+			    writer.updateDocument(term(book), toDocument(book));
+			}
+			lastId = book.getId();
+		    }
+		}
+	    } while (slice.hasNext());
+
+	    writer.commit();
+	    searcherManager.maybeRefreshBlocking();
+	} catch (IOException ex) {
+	    throw new UncheckedIOException("Can't rebuild book search index", ex);
+	} finally {
+	    writtenDuringRebuild = null;
+	}
+    }
+
+    private void written(Book book) {
+	Set<Long> written = writtenDuringRebuild;
+	if (written != null) {
+	    written.add(book.getId());
+	}
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+	searcherManager.close();
+	writer.close();
+	directory.close();
+    }
+
+    private Query parse(String text) {
+	MultiFieldQueryParser parser = new MultiFieldQueryParser(SEARCH_FIELDS, analyzer);
+	parser.setDefaultOperator(QueryParser.Operator.AND);
+	try {
+	    return parser.parse(QueryParser.escape(text));
+	} catch (ParseException ex) {
+	    throw new BusinessException("Invalid search query");
+	}
+    }
+
+    private Term term(Book book) {
+	return new Term(ID, book.getId().toString());
+    }
+
+    private Document toDocument(Book book) {
+	Document document = new Document();
+	document.add(new StringField(ID, book.getId().toString(), Store.YES));
+	document.add(new TextField(TITLE, nullToEmpty(book.getTitle()), Store.YES));
+	document.add(new TextField(AUTHOR, nullToEmpty(book.getAuthor()), Store.YES));
+	document.add(new TextField(ISBN, nullToEmpty(book.getIsbn()), Store.YES));
+	return document;
+    }
+
+    private Book toBook(Document document) {
+	Book book = new Book();
+	book.setId(Long.valueOf(document.get(ID)));
+	book.setTitle(document.get(TITLE));
+	book.setAuthor(document.get(AUTHOR));
+	book.setIsbn(document.get(ISBN));
+	return book;
+    }
+
+    private String nullToEmpty(String value) {
+	return value == null ? "" : value;
+    }
+
+}
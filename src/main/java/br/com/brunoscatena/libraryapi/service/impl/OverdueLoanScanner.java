@@ -0,0 +1,103 @@
+package br.com.brunoscatena.libraryapi.service.impl;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import br.com.brunoscatena.libraryapi.api.dto.OverdueLoanDTO;
+import br.com.brunoscatena.libraryapi.model.repository.LoanRepository;
+import br.com.brunoscatena.libraryapi.service.OverdueNotificationSink;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Finds the open loans past their due date and hands them to the
+ * {@link OverdueNotificationSink}, one chunk at a time. Each chunk is its own
+ * short read, continuing after the last loan of the previous chunk, so a sweep
+ * never holds a transaction or more than one chunk in memory. Every sweep
+ * reports every loan still overdue, so customers get one reminder per sweep
+ * until they return the book.
+ * <p>
+ * Published as library.loans.overdue.sweep (duration of each sweep) and
+ * library.loans.overdue.rows (overdue loans found per sweep).
+ */
+@Slf4j
+@Component
+public class OverdueLoanScanner {
+
+    /** Before any due date, where the first chunk starts. */
+    private static final LocalDate START = LocalDate.of(1970, 1, 1);
+
+    private final LoanRepository loanRepository;
+    private final OverdueNotificationSink sink;
+    private final int chunkSize;
+    private final Timer sweepTimer;
+    private final DistributionSummary sweepRows;
+
+    public OverdueLoanScanner(LoanRepository loanRepository, OverdueNotificationSink sink,
+	    MeterRegistry meterRegistry,
+	    @Value("${library.loans.overdue.chunk-size:500}") int chunkSize) {
+	this.loanRepository = loanRepository;
+	this.sink = sink;
+	this.chunkSize = chunkSize;
+	this.sweepTimer = Timer.builder("library.loans.overdue.sweep")
+		.description("Duration of an overdue loan sweep")
+		.register(meterRegistry);
+	this.sweepRows = DistributionSummary.builder("library.loans.overdue.rows")
+		.description("Overdue loans found by a sweep")
+		.register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${library.loans.overdue.cron:0 0 6 * * *}")
+    public void sweep() {
+	sweep(LocalDate.now());
+    }
+
+    /**
+     * Sends every loan due before {@code today} that is still open.
+     *
+     * @return the number of overdue loans found
+     */
+    public int sweep(LocalDate today) {
+	long start = System.nanoTime();
+	int rows = 0;
+	int chunks = 0;
+	try {
+	    LocalDate lastDueDate = START;
+	    Long lastId = 0L;
+	    Slice<OverdueLoanDTO> chunk;
+	    do {
+		chunk = loanRepository.findOverdueAfter(today, lastDueDate, lastId,
+			PageRequest.of(0, chunkSize));
+		List<OverdueLoanDTO> loans = chunk.getContent();
+		if (loans.isEmpty()) {
+		    break;
+		}
+
+		sink.send(loans);
+		rows += loans.size();
+		chunks++;
+
+		OverdueLoanDTO last = loans.get(loans.size() - 1);
+		lastDueDate = last.getDueDate();
+		lastId = last.getId();
+	    } while (chunk.hasNext());
+	} finally {
+	    long elapsed = System.nanoTime() - start;
+	    sweepTimer.record(elapsed, TimeUnit.NANOSECONDS);
+	    sweepRows.record(rows);
+	    log.info("Overdue sweep for {} found {} loans in {} chunks, took {} ms", today, rows,
+		    chunks, TimeUnit.NANOSECONDS.toMillis(elapsed));
+	}
+	return rows;
+    }
+
+}
@@ -0,0 +1,107 @@
+package br.com.brunoscatena.libraryapi.service.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import br.com.brunoscatena.libraryapi.exception.BusinessException;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.repository.reactive.ReactiveBookRepository;
+import br.com.brunoscatena.libraryapi.model.row.BookRow;
+import br.com.brunoscatena.libraryapi.service.BookSearchService;
+import br.com.brunoscatena.libraryapi.service.ReactiveBookService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Book service of the reactive profile, on R2DBC. A duplicated ISBN is caught
+ * by the same unique constraint as in BookServiceImpl and rejected with the
+ * same message and rejection counter. R2DBC writes bypass the JPA entity
+ * listener, so saved books are added to the search index here.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveBookServiceImpl implements ReactiveBookService {
+
+    static final int PAGE_SIZE = 100;
+
+    private static final String ISBN_CONSTRAINT = "uk_book_isbn";
+
+    private final ReactiveBookRepository repository;
+    private final BookSearchService bookSearchService;
+    private final Rejections rejections;
+
+    public ReactiveBookServiceImpl(ReactiveBookRepository repository,
+	    BookSearchService bookSearchService) {
+	this(repository, bookSearchService, Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public ReactiveBookServiceImpl(ReactiveBookRepository repository,
+	    BookSearchService bookSearchService, MeterRegistry meterRegistry) {
+	this.repository = repository;
+	this.bookSearchService = bookSearchService;
+	this.rejections = new Rejections(meterRegistry);
+    }
+
+    /*
+     * A new book is never loaned and starts at version 0, the column defaults
+     * of the insert, so it is not read back.
+     */
+    @Override
+    public Mono<Book> save(Book book) {
+	return repository.nextId()
+		.flatMap(id -> repository.insert(id, book.getTitle(), book.getAuthor(), book.getIsbn())
+			.thenReturn(book.toBuilder().id(id).loaned(false).version(0L).build()))
+		.onErrorMap(DataIntegrityViolationException.class, this::translate)
+		.flatMap(this::index);
+    }
+
+    private Throwable translate(DataIntegrityViolationException ex) {
+	if (ConstraintViolations.isViolationOf(ex, ISBN_CONSTRAINT)) {
+	    rejections.duplicateIsbn();
+	    return new BusinessException("ISBN already being used");
+	}
+	return ex;
+    }
+
+    /*
+     * The Lucene index may live on disk, so it is written off the caller's
+     * thread.
+     */
+    private Mono<Book> index(Book book) {
+	return Mono.fromRunnable(() -> bookSearchService.index(book))
+		.subscribeOn(Schedulers.boundedElastic())
+		.thenReturn(book);
+    }
+
+    @Override
+    public Mono<Book> findById(Long id) {
+	return repository.findById(id).map(BookRow::toBook);
+    }
+
+    @Override
+    public Mono<Book> findByIsbn(String isbn) {
+	return repository.findByIsbn(isbn).map(BookRow::toBook);
+    }
+
+    @Override
+    public Flux<Book> find(Book filter) {
+	return KeysetFlux.of(lastId -> repository.findAfter(filter.getTitle(), filter.getAuthor(),
+		filter.getIsbn(), filter.getLoaned(), lastId, PAGE_SIZE)
+		.map(BookRow::toBook)
+		.collectList(), Book::getId, PAGE_SIZE);
+    }
+
+    @Override
+    public Flux<Book> search(String text, int limit) {
+	return Mono.fromCallable(() -> bookSearchService.search(text, limit))
+		.flatMapIterable(books -> books)
+		.subscribeOn(Schedulers.boundedElastic());
+    }
+
+}
@@ -0,0 +1,264 @@
+package br.com.brunoscatena.libraryapi.service.impl;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import br.com.brunoscatena.libraryapi.api.dto.LoanFilterDTO;
+import br.com.brunoscatena.libraryapi.exception.BusinessException;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
+import br.com.brunoscatena.libraryapi.model.entity.Loan;
+import br.com.brunoscatena.libraryapi.model.repository.reactive.ReactiveBookRepository;
+import br.com.brunoscatena.libraryapi.model.repository.reactive.ReactiveCustomerRepository;
+import br.com.brunoscatena.libraryapi.model.repository.reactive.ReactiveLoanRepository;
+import br.com.brunoscatena.libraryapi.model.row.BookRow;
+import br.com.brunoscatena.libraryapi.model.row.CustomerRow;
+import br.com.brunoscatena.libraryapi.model.row.LoanRow;
+import br.com.brunoscatena.libraryapi.service.ReactiveLoanService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Loan service of the reactive profile, on R2DBC, with the rules of
+ * LoanServiceImpl: a checkout takes the book with the conditional loaned flag
+ * update, the unique index on open loans stays as the last guard, and both
+ * reject with the same message and rejection counter. The customer of a new
+ * loan is given by name and resolved before the loan transaction starts.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveLoanServiceImpl implements ReactiveLoanService {
+
+    static final int PAGE_SIZE = 100;
+
+    private static final String ACTIVE_LOAN_CONSTRAINT = "uk_loan_active_book";
+    private static final String CUSTOMER_NAME_CONSTRAINT = "uk_customer_name";
+
+    private final ReactiveLoanRepository loanRepository;
+    private final ReactiveBookRepository bookRepository;
+    private final ReactiveCustomerRepository customerRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final Rejections rejections;
+
+    public ReactiveLoanServiceImpl(ReactiveLoanRepository loanRepository,
+	    ReactiveBookRepository bookRepository, ReactiveCustomerRepository customerRepository,
+	    TransactionalOperator transactionalOperator) {
+	this(loanRepository, bookRepository, customerRepository, transactionalOperator,
+		Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public ReactiveLoanServiceImpl(ReactiveLoanRepository loanRepository,
+	    ReactiveBookRepository bookRepository, ReactiveCustomerRepository customerRepository,
+	    TransactionalOperator transactionalOperator, MeterRegistry meterRegistry) {
+	this.loanRepository = loanRepository;
+	this.bookRepository = bookRepository;
+	this.customerRepository = customerRepository;
+	this.transactionalOperator = transactionalOperator;
+	this.rejections = new Rejections(meterRegistry);
+    }
+
+    @Override
+    public Mono<Loan> save(Loan loan) {
+	if (loan.getCustomer() == null) {
+	    return checkout(loan);
+	}
+	return findOrCreateCustomer(loan.getCustomer().getName()).flatMap(customer -> {
+	    loan.setCustomer(customer);
+	    return checkout(loan);
+	});
+    }
+
+    /*
+     * Like CustomerServiceImpl: outside the loan transaction, and a name
+     * inserted first by a concurrent loan is read back instead.
+     */
+    private Mono<Customer> findOrCreateCustomer(String name) {
+	return customerRepository.findByName(name)
+		.switchIfEmpty(Mono.defer(() -> customerRepository.insert(name)
+			.onErrorResume(DataIntegrityViolationException.class,
+				ex -> ConstraintViolations.isViolationOf(ex, CUSTOMER_NAME_CONSTRAINT)
+					? Mono.empty()
+					: Mono.error(ex))
+			.then(customerRepository.findByName(name))))
+		.map(CustomerRow::toCustomer);
+    }
+
+    private Mono<Loan> checkout(Loan loan) {
+	if (loan.getDueDate() == null && loan.getLoanDate() != null) {
+	    loan.setDueDate(loan.getLoanDate().plus(Loan.LOAN_PERIOD));
+	}
+
+	return markLoaned(loan.getBook().getId())
+		.then(loanRepository.nextId())
+		.flatMap(id -> loanRepository.insert(id, loan.getBook().getId(),
+			loan.getCustomer() == null ? null : loan.getCustomer().getId(),
+			loan.getLoanDate(), loan.getDueDate())
+			.then(Mono.fromSupplier(() -> {
+			    loan.setId(id);
+			    loan.setVersion(0L);
+			    return loan;
+			})))
+		.as(transactionalOperator::transactional)
+		.onErrorMap(DataIntegrityViolationException.class, this::translate);
+    }
+
+    private Mono<Void> markLoaned(Long bookId) {
+	return bookRepository.markLoaned(bookId).flatMap(updated -> {
+	    if (updated == 0) {
+		rejections.alreadyLoaned();
+		return Mono.error(new BusinessException("Book already loaned"));
+	    }
+	    return Mono.empty();
+	});
+    }
+
+    private Throwable translate(DataIntegrityViolationException ex) {
+	if (ConstraintViolations.isViolationOf(ex, ACTIVE_LOAN_CONSTRAINT)) {
+	    rejections.alreadyLoaned();
+	    return new BusinessException("Book already loaned");
+	}
+	return ex;
+    }
+
+    @Override
+    public Mono<Loan> findById(Long id) {
+	return loanRepository.findById(id)
+		.flatMap(row -> toLoans(Collections.singletonList(row)))
+		.map(loans -> loans.get(0));
+    }
+
+    /*
+     * Same transitions as LoanServiceImpl.update: returning a returned loan is
+     * rejected, reopening one takes the book back with the conditional update,
+     * and the loan row is only written at the version the caller read.
+     */
+    @Override
+    public Mono<Loan> update(Loan loan) {
+	boolean returned = Boolean.TRUE.equals(loan.getReturned());
+	if (!returned) {
+	    loan.setReturnDate(null);
+	} else if (loan.getReturnDate() == null) {
+	    loan.setReturnDate(LocalDate.now());
+	}
+
+	Long bookId = loan.getBook().getId();
+	return loanRepository.findReturnedById(loan.getId())
+		.defaultIfEmpty(false)
+		.flatMap(wasReturned -> {
+		    if (returned && wasReturned) {
+			rejections.alreadyReturned();
+			return Mono.error(new BusinessException("Loan already returned"));
+		    }
+		    return !returned && wasReturned ? markLoaned(bookId) : Mono.empty();
+		})
+		.then(loanRepository.updateReturned(loan.getId(), loan.getVersion(), loan.getReturned(),
+			loan.getReturnDate()))
+		.flatMap(updated -> updated == 0
+			? Mono.<Integer>error(new OptimisticLockingFailureException(
+				"Loan " + loan.getId() + " was changed by another request"))
+			: returned ? bookRepository.updateLoaned(bookId, false) : Mono.just(updated))
+		.then(Mono.fromSupplier(() -> {
+		    loan.setVersion(loan.getVersion() + 1);
+		    return loan;
+		}))
+		.as(transactionalOperator::transactional)
+		.onErrorMap(DataIntegrityViolationException.class, this::translate);
+    }
+
+    /*
+     * As in LoanServiceImpl.findAfter, the isbn and the customer are resolved
+     * to ids first; a filter matching no book or customer finds nothing. With
+     * both, each page is the union of the two keyset pages, in id order.
+     */
+    @Override
+    public Flux<Loan> find(LoanFilterDTO filter) {
+	Mono<Long> bookId = filter.getIsbn() == null
+		? Mono.just(0L)
+		: bookRepository.findIdByIsbn(filter.getIsbn()).defaultIfEmpty(-1L);
+	Mono<Long> customerId = filter.getCustomer() == null
+		? Mono.just(0L)
+		: customerRepository.findByName(filter.getCustomer())
+			.map(CustomerRow::getId)
+			.defaultIfEmpty(-1L);
+
+	return Mono.zip(bookId, customerId).flatMapMany(ids -> {
+	    if (ids.getT1() < 0 || ids.getT2() < 0) {
+		return Flux.empty();
+	    }
+	    return KeysetFlux.of(lastId -> page(ids.getT1(), ids.getT2(), lastId)
+		    .flatMap(this::toLoans), Loan::getId, PAGE_SIZE);
+	});
+    }
+
+    /*
+     * 0 stands for a filter that was not given.
+     */
+    private Mono<List<LoanRow>> page(long bookId, long customerId, Long lastId) {
+	if (bookId > 0 && customerId > 0) {
+	    return Mono.zip(
+		    loanRepository.findAfterByBookId(bookId, lastId, PAGE_SIZE).collectList(),
+		    loanRepository.findAfterByCustomerId(customerId, lastId, PAGE_SIZE).collectList())
+		    .map(pages -> mergeById(pages.getT1(), pages.getT2()));
+	}
+	if (bookId > 0) {
+	    return loanRepository.findAfterByBookId(bookId, lastId, PAGE_SIZE).collectList();
+	}
+	if (customerId > 0) {
+	    return loanRepository.findAfterByCustomerId(customerId, lastId, PAGE_SIZE).collectList();
+	}
+	return loanRepository.findAfter(lastId, PAGE_SIZE).collectList();
+    }
+
+    /*
+     * The first PAGE_SIZE loans of both pages, each once.
+     */
+    private static List<LoanRow> mergeById(List<LoanRow> first, List<LoanRow> second) {
+	TreeMap<Long, LoanRow> merged = new TreeMap<>();
+	first.forEach(row -> merged.put(row.getId(), row));
+	second.forEach(row -> merged.putIfAbsent(row.getId(), row));
+	return merged.values().stream().limit(PAGE_SIZE).collect(Collectors.toList());
+    }
+
+    /*
+     * The books and customers of a page of loans, one query each.
+     */
+    private Mono<List<Loan>> toLoans(List<LoanRow> rows) {
+	Mono<Map<Long, Book>> books = findAllById(ids(rows, LoanRow::getBookId),
+		bookRepository::findAllById)
+		.collectMap(BookRow::getId, BookRow::toBook);
+	Mono<Map<Long, Customer>> customers = findAllById(ids(rows, LoanRow::getCustomerId),
+		customerRepository::findAllById)
+		.collectMap(CustomerRow::getId, CustomerRow::toCustomer);
+
+	return Mono.zip(books, customers).map(found -> rows.stream()
+		.map(row -> row.toLoan(found.getT1().get(row.getBookId()),
+			found.getT2().get(row.getCustomerId())))
+		.collect(Collectors.toList()));
+    }
+
+    private static Set<Long> ids(List<LoanRow> rows, Function<LoanRow, Long> id) {
+	return rows.stream().map(id).filter(Objects::nonNull).collect(Collectors.toSet());
+    }
+
+    private static <T> Flux<T> findAllById(Set<Long> ids, Function<Set<Long>, Flux<T>> finder) {
+	return ids.isEmpty() ? Flux.empty() : finder.apply(ids);
+    }
+
+}
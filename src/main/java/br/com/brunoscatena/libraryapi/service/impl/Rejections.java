@@ -0,0 +1,43 @@
+package br.com.brunoscatena.libraryapi.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Requests turned down by a business rule, published as library.rejections
+ * tagged with the reason. Batch operations count each rejected item.
+ */
+class Rejections {
+
+    static final String NAME = "library.rejections";
+
+    private final Counter duplicateIsbn;
+    private final Counter alreadyLoaned;
+    private final Counter alreadyReturned;
+
+    Rejections(MeterRegistry meterRegistry) {
+	this.duplicateIsbn = counter(meterRegistry, "duplicate_isbn");
+	this.alreadyLoaned = counter(meterRegistry, "already_loaned");
+	this.alreadyReturned = counter(meterRegistry, "already_returned");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String reason) {
+	return Counter.builder(NAME)
+		.description("Requests rejected by a business rule")
+		.tag("reason", reason)
+		.register(meterRegistry);
+    }
+
+    void duplicateIsbn() {
+	duplicateIsbn.increment();
+    }
+
+    void alreadyLoaned() {
+	alreadyLoaned.increment();
+    }
+
+    void alreadyReturned() {
+	alreadyReturned.increment();
+    }
+
+}
@@ -0,0 +1,34 @@
+package db.migration;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * Book ids move from the identity column to a pooled sequence, so Hibernate can
+ * batch inserts. Hibernate's pooled optimizer reads each sequence value as the
+ * upper end of a block of 50 ids, so the sequence starts one block above the
+ * highest existing id.
+ */
+public class V4__create_book_sequence extends BaseJavaMigration {
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+	try (Statement statement = context.getConnection().createStatement()) {
+	    long maxId = 0;
+	    try (ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM book")) {
+		if (resultSet.next()) {
+		    maxId = resultSet.getLong(1);
+		}
+	    }
+
+	    statement.execute("CREATE SEQUENCE book_seq START WITH " + (maxId + ALLOCATION_SIZE)
+		    + " INCREMENT BY " + ALLOCATION_SIZE);
+	}
+    }
+
+}
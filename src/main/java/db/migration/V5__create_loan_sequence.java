@@ -0,0 +1,32 @@
+package db.migration;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * Loan ids move to a pooled sequence as well, so batch checkouts are inserted
+ * in JDBC batches. Same numbering rule as {@link V4__create_book_sequence}.
+ */
+public class V5__create_loan_sequence extends BaseJavaMigration {
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+	try (Statement statement = context.getConnection().createStatement()) {
+	    long maxId = 0;
+	    try (ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM loan")) {
+		if (resultSet.next()) {
+		    maxId = resultSet.getLong(1);
+		}
+	    }
+
+	    statement.execute("CREATE SEQUENCE loan_seq START WITH " + (maxId + ALLOCATION_SIZE)
+		    + " INCREMENT BY " + ALLOCATION_SIZE);
+	}
+    }
+
+}
@@ -0,0 +1,3 @@
+-- The loan refers to its customer through customer_id only: the name it kept
+-- since V9 was a copy of customer.name, written on every loan and never read.
+ALTER TABLE loan DROP COLUMN customer;
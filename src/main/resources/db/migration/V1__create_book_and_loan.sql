@@ -0,0 +1,15 @@
+CREATE TABLE book (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    title VARCHAR(255),
+    author VARCHAR(255),
+    isbn VARCHAR(255)
+);
+
+CREATE TABLE loan (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    customer VARCHAR(100),
+    book_id BIGINT,
+    loan_date DATE,
+    returned BOOLEAN,
+    CONSTRAINT fk_loan_book FOREIGN KEY (book_id) REFERENCES book (id)
+);
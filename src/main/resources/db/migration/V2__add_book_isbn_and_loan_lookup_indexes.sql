@@ -0,0 +1,9 @@
+-- BookRepository.existsByIsbn / findByIsbn
+ALTER TABLE book ADD CONSTRAINT uk_book_isbn UNIQUE (isbn);
+
+-- LoanRepository.existsByBookIdAndNotReturned: the open loan of a book is found
+-- without reading the rest of its loan history
+CREATE INDEX idx_loan_book_returned ON loan (book_id, returned);
+
+-- customer side of the loan search
+CREATE INDEX idx_loan_customer ON loan (customer);
@@ -0,0 +1,7 @@
+-- At most one open loan per book. active_book_id holds the book while the loan
+-- is open and NULL once it is returned; NULLs never collide in a unique index,
+-- so this behaves as a unique index filtered on open loans.
+ALTER TABLE loan ADD COLUMN active_book_id BIGINT
+    GENERATED ALWAYS AS (CASE WHEN returned THEN NULL ELSE book_id END);
+
+CREATE UNIQUE INDEX uk_loan_active_book ON loan (active_book_id);
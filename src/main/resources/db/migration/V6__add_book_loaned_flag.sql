@@ -0,0 +1,9 @@
+-- Availability kept on the book row, so checking or listing it is a keyed
+-- lookup instead of an aggregate over loan. Set and cleared by LoanServiceImpl
+-- in the same transaction as the loan.
+ALTER TABLE book ADD COLUMN loaned BOOLEAN DEFAULT FALSE NOT NULL;
+
+UPDATE book SET loaned = TRUE
+    WHERE id IN (SELECT book_id FROM loan WHERE returned IS NULL OR returned = FALSE);
+
+CREATE INDEX idx_book_loaned ON book (loaned, id);
@@ -0,0 +1,14 @@
+-- Due and return dates. Loans made before this migration get the default
+-- loan period (Loan.LOAN_PERIOD) from their loan date.
+ALTER TABLE loan ADD COLUMN due_date DATE;
+ALTER TABLE loan ADD COLUMN return_date DATE;
+
+UPDATE loan SET due_date = DATEADD('DAY', 14, loan_date);
+
+-- open_due_date holds the due date while the loan is open and NULL once it is
+-- returned, so the overdue range (open_due_date < today) only walks open loans
+-- and returned history never has to be skipped over.
+ALTER TABLE loan ADD COLUMN open_due_date DATE
+    GENERATED ALWAYS AS (CASE WHEN returned THEN NULL ELSE due_date END);
+
+CREATE INDEX idx_loan_open_due_date ON loan (open_due_date, id);
@@ -0,0 +1,8 @@
+-- Row versions for conditional GETs: version is bumped on every change (by
+-- Hibernate, and by the loaned flag updates in BookRepository) and
+-- last_modified records when it happened.
+ALTER TABLE book ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE book ADD COLUMN last_modified TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL;
+
+ALTER TABLE loan ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE loan ADD COLUMN last_modified TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL;
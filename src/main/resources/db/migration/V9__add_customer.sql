@@ -0,0 +1,23 @@
+-- Customers as rows of their own, created on their first loan. The loan keeps
+-- the name as it was typed, and customer_id is what the loan search filters on:
+-- the name is resolved once through uk_customer_name and the loans are then a
+-- range of idx_loan_customer_id, already in id order for paging.
+CREATE TABLE customer (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    CONSTRAINT uk_customer_name UNIQUE (name)
+);
+
+INSERT INTO customer (name)
+    SELECT DISTINCT customer FROM loan WHERE customer IS NOT NULL;
+
+ALTER TABLE loan ADD COLUMN customer_id BIGINT;
+
+UPDATE loan SET customer_id = (SELECT c.id FROM customer c WHERE c.name = loan.customer);
+
+ALTER TABLE loan ADD CONSTRAINT fk_loan_customer FOREIGN KEY (customer_id) REFERENCES customer (id);
+
+CREATE INDEX idx_loan_customer_id ON loan (customer_id, id);
+
+-- the search no longer compares names on loan
+DROP INDEX idx_loan_customer;
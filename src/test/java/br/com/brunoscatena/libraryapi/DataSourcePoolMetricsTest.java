@@ -0,0 +1,48 @@
+package br.com.brunoscatena.libraryapi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import br.com.brunoscatena.libraryapi.service.BookService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class DataSourcePoolMetricsTest {
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    BookService bookService;
+
+    @Test
+    @DisplayName("Should publish how long service calls wait for a pooled connection")
+    public void poolMetricsTest() {
+
+	bookService.findVersion(-1L);
+
+	assertThat(meterRegistry.get("hikaricp.connections.acquire")
+		.tag("pool", "library-pool")
+		.timer()
+		.count()).isPositive();
+	assertThat(meterRegistry.get("hikaricp.connections.pending")
+		.tag("pool", "library-pool")
+		.gauge()
+		.value()).isZero();
+	assertThat(meterRegistry.get("hikaricp.connections.max")
+		.tag("pool", "library-pool")
+		.gauge()
+		.value()).isEqualTo(10);
+
+    }
+
+}
@@ -0,0 +1,51 @@
+package br.com.brunoscatena.libraryapi.api.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.mapper.impl.BookMapperImpl;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+
+public class BookMapperTest {
+
+    BookMapper bookMapper = new BookMapperImpl();
+
+    @Test
+    @DisplayName("Should map book to DTO")
+    public void toDTOTest() {
+
+	Book book = Book.builder().id(1L).author("Bruno").title("As aventuras").isbn("1234").build();
+
+	BookDTO dto = bookMapper.toDTO(book);
+
+	assertThat(dto.getId()).isEqualTo(book.getId());
+	assertThat(dto.getAuthor()).isEqualTo(book.getAuthor());
+	assertThat(dto.getTitle()).isEqualTo(book.getTitle());
+	assertThat(dto.getIsbn()).isEqualTo(book.getIsbn());
+    }
+
+    @Test
+    @DisplayName("Should map DTO to book")
+    public void toEntityTest() {
+
+	BookDTO dto = BookDTO.builder().author("Bruno").title("As aventuras").isbn("1234").build();
+
+	Book book = bookMapper.toEntity(dto);
+
+	assertThat(book.getId()).isNull();
+	assertThat(book.getAuthor()).isEqualTo(dto.getAuthor());
+	assertThat(book.getTitle()).isEqualTo(dto.getTitle());
+	assertThat(book.getIsbn()).isEqualTo(dto.getIsbn());
+    }
+
+    @Test
+    @DisplayName("Should map null to null")
+    public void nullTest() {
+	assertThat(bookMapper.toDTO(null)).isNull();
+	assertThat(bookMapper.toEntity(null)).isNull();
+    }
+
+}
@@ -0,0 +1,38 @@
+package br.com.brunoscatena.libraryapi.api.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.api.mapper.impl.BookMapperImpl;
+import br.com.brunoscatena.libraryapi.api.mapper.impl.LoanMapperImpl;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
+import br.com.brunoscatena.libraryapi.model.entity.Loan;
+
+public class LoanMapperTest {
+
+    LoanMapper loanMapper = new LoanMapperImpl(new BookMapperImpl());
+
+    @Test
+    @DisplayName("Should map loan and its book to DTO")
+    public void toDTOTest() {
+
+	Book book = Book.builder().id(1L).author("Bruno").title("As aventuras").isbn("1234").build();
+	Customer customer = Customer.builder().id(3L).name("José").build();
+	Loan loan = Loan.builder().id(2L).customer(customer).book(book).loanDate(LocalDate.now()).build();
+
+	LoanDTO dto = loanMapper.toDTO(loan);
+
+	assertThat(dto.getId()).isEqualTo(loan.getId());
+	assertThat(dto.getCustomer()).isEqualTo(customer.getName());
+	assertThat(dto.getIsbn()).isEqualTo(book.getIsbn());
+	assertThat(dto.getBook().getId()).isEqualTo(book.getId());
+	assertThat(dto.getBook().getTitle()).isEqualTo(book.getTitle());
+    }
+
+}
@@ -1,25 +1,40 @@
 package br.com.brunoscatena.libraryapi.api.resource;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.BDDMockito;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -27,20 +42,34 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 
 import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.BookImportErrorDTO;
+import br.com.brunoscatena.libraryapi.api.dto.BookImportResultDTO;
+import br.com.brunoscatena.libraryapi.api.dto.ResourceVersionDTO;
+import br.com.brunoscatena.libraryapi.api.pagination.CursorCodec;
+import br.com.brunoscatena.libraryapi.api.protobuf.LibraryMessages;
+import br.com.brunoscatena.libraryapi.api.protobuf.LibraryProtobuf;
 import br.com.brunoscatena.libraryapi.exception.BusinessException;
 import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.service.BookSearchService;
 import br.com.brunoscatena.libraryapi.service.BookService;
+import br.com.brunoscatena.libraryapi.service.CountMode;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -56,6 +85,9 @@ public class BookControllerTest {
     @MockBean
     BookService service;
 
+    @MockBean
+    BookSearchService searchService;
+
     private BookDTO createNewBook() {
 	return BookDTO.builder().author("Artur").title("As aventuras").isbn("001").build();
     }
@@ -158,6 +190,61 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Should tag a book with its version")
+    public void getBookETagTest() throws Exception {
+
+	Long id = 1L;
+	Book book = Book.builder()
+		.id(id)
+		.title("Adventures")
+		.author("Some One")
+		.isbn("1234")
+		.version(3L)
+		.lastModified(Instant.parse("2020-01-10T10:00:00Z"))
+		.build();
+	BDDMockito.given(service.findById(id)).willReturn(Optional.of(book));
+
+	mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "/" + id))
+		.andExpect(status().isOk())
+		.andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+		.andExpect(header().string(HttpHeaders.LAST_MODIFIED, "Fri, 10 Jan 2020 10:00:00 GMT"));
+
+	verify(service, never()).findVersion(anyLong());
+
+    }
+
+    @Test
+    @DisplayName("Should answer not modified from the version without loading the book")
+    public void getBookNotModifiedTest() throws Exception {
+
+	BDDMockito.given(service.findVersion(1L))
+		.willReturn(Optional.of(new ResourceVersionDTO(3L, Instant.parse("2020-01-10T10:00:00Z"))));
+
+	mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "/1").header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+		.andExpect(status().isNotModified())
+		.andExpect(content().string(""));
+
+	verify(service, never()).findById(anyLong());
+
+    }
+
+    @Test
+    @DisplayName("Should return the book when the version sent is outdated")
+    public void getBookModifiedTest() throws Exception {
+
+	Book book = Book.builder().id(1L).title("Adventures").version(4L).build();
+	BDDMockito.given(service.findVersion(1L))
+		.willReturn(Optional.of(new ResourceVersionDTO(4L, Instant.parse("2020-01-10T10:00:00Z"))));
+	BDDMockito.given(service.findById(1L)).willReturn(Optional.of(book));
+
+	mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "/1").header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+		.andExpect(status().isOk())
+		.andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+		.andExpect(jsonPath("title").value("Adventures"));
+
+    }
+
     @Test
     @DisplayName("Should return not found when the book doesn't exists")
     public void bookNotFoundTest() throws Exception {
@@ -221,6 +308,57 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Should update a book from the version the client read")
+    public void updateBookWithVersionTest() throws Exception {
+
+	Book oldBook = Book.builder().id(1L).title("Antigo").author("Bruno").isbn("1234").version(5L)
+		.build();
+	BookDTO newBookValues = BookDTO.builder()
+		.title("Novo")
+		.author("Bruno")
+		.isbn("1234")
+		.version(4L)
+		.build();
+
+	when(service.findById(1L)).thenReturn(Optional.of(oldBook));
+	when(service.update(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+	mvc.perform(MockMvcRequestBuilders.put(BOOK_API + "/1")
+		.contentType(MediaType.APPLICATION_JSON)
+		.content(new ObjectMapper().writeValueAsString(newBookValues)))
+		.andExpect(status().isOk());
+
+	verify(service, times(1)).update(Mockito.argThat(book -> book.getVersion() == 4L
+		&& "Novo".equals(book.getTitle())));
+
+    }
+
+    @Test
+    @DisplayName("Should return conflict when the book changed since it was read")
+    public void updateBookConflictTest() throws Exception {
+
+	Book oldBook = Book.builder().id(1L).title("Antigo").author("Bruno").isbn("1234").version(5L)
+		.build();
+	BookDTO newBookValues = BookDTO.builder()
+		.title("Novo")
+		.author("Bruno")
+		.isbn("1234")
+		.version(4L)
+		.build();
+
+	when(service.findById(1L)).thenReturn(Optional.of(oldBook));
+	when(service.update(any(Book.class)))
+		.thenThrow(new ObjectOptimisticLockingFailureException(Book.class, 1L));
+
+	mvc.perform(MockMvcRequestBuilders.put(BOOK_API + "/1")
+		.contentType(MediaType.APPLICATION_JSON)
+		.content(new ObjectMapper().writeValueAsString(newBookValues)))
+		.andExpect(status().isConflict())
+		.andExpect(jsonPath("errors", Matchers.hasSize(1)));
+
+    }
+
     @Test
     @DisplayName("Should return 404 when update a non existent book")
     public void updateInexistentBookTest() throws Exception {
@@ -285,17 +423,18 @@ public class BookControllerTest {
     @DisplayName("Should find book using filters")
     public void findBookTest() throws Exception {
 
-	Book book = Book.builder()
+	BookDTO book = BookDTO.builder()
 		.id(1L)
 		.author("Bruno")
 		.title("As aventuras")
 		.isbn("1234")
 		.build();
 
-	List<Book> books = Arrays.asList(book);
-	PageImpl<Book> bookPage = new PageImpl<Book>(books, PageRequest.of(0, 100), 1);
+	List<BookDTO> books = Arrays.asList(book);
+	PageImpl<BookDTO> bookPage = new PageImpl<BookDTO>(books, PageRequest.of(0, 100), 1);
 
-	when(service.find(any(Book.class), any(Pageable.class))).thenReturn(bookPage);
+	when(service.findDTOs(any(Book.class), any(Pageable.class), eq(CountMode.EXACT)))
+		.thenReturn(bookPage);
 
 	MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API)
 		.queryParam("author", book.getAuthor())
@@ -312,4 +451,369 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Should answer not modified when the page of books is unchanged")
+    public void findBookNotModifiedTest() throws Exception {
+
+	BookDTO book = BookDTO.builder().id(1L).author("Bruno").isbn("1234").version(2L).build();
+	PageImpl<BookDTO> bookPage = new PageImpl<BookDTO>(Arrays.asList(book), PageRequest.of(0, 100),
+		1);
+
+	when(service.findDTOs(any(Book.class), any(Pageable.class), eq(CountMode.EXACT)))
+		.thenReturn(bookPage);
+
+	String etag = mvc.perform(MockMvcRequestBuilders.get(BOOK_API).queryParam("size", "100"))
+		.andExpect(status().isOk())
+		.andReturn()
+		.getResponse()
+		.getHeader(HttpHeaders.ETAG);
+
+	mvc.perform(MockMvcRequestBuilders.get(BOOK_API)
+		.queryParam("size", "100")
+		.header(HttpHeaders.IF_NONE_MATCH, etag))
+		.andExpect(status().isNotModified());
+
+	book.setVersion(3L);
+
+	mvc.perform(MockMvcRequestBuilders.get(BOOK_API)
+		.queryParam("size", "100")
+		.header(HttpHeaders.IF_NONE_MATCH, etag))
+		.andExpect(status().isOk())
+		.andExpect(jsonPath("content", Matchers.hasSize(1)));
+
+    }
+
+    @Test
+    @DisplayName("Should find book without counting when count is NONE")
+    public void findBookWithoutCountTest() throws Exception {
+
+	BookDTO book = BookDTO.builder()
+		.id(1L)
+		.author("Bruno")
+		.title("As aventuras")
+		.isbn("1234")
+		.build();
+
+	when(service.findDTOs(any(Book.class), any(Pageable.class), eq(CountMode.NONE)))
+		.thenReturn(new SliceImpl<BookDTO>(Arrays.asList(book), PageRequest.of(0, 1), true));
+
+	MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API)
+		.queryParam("title", book.getTitle())
+		.queryParam("page", "0")
+		.queryParam("size", "1")
+		.queryParam("count", "NONE")
+		.accept(MediaType.APPLICATION_JSON);
+
+	mvc.perform(request)
+		.andExpect(status().isOk())
+		.andExpect(jsonPath("content", Matchers.hasSize(1)))
+		.andExpect(jsonPath("last").value(false))
+		.andExpect(jsonPath("totalElements").doesNotExist());
+
+    }
+
+    @Test
+    @DisplayName("Should write the page of books as CBOR when asked for")
+    public void findBookCborTest() throws Exception {
+
+	BookDTO book = BookDTO.builder().id(1L).author("Bruno").title("As aventuras").build();
+
+	when(service.findDTOs(any(Book.class), any(Pageable.class), eq(CountMode.EXACT)))
+		.thenReturn(new PageImpl<BookDTO>(Arrays.asList(book), PageRequest.of(0, 100), 1));
+
+	MediaType cbor = MediaType.parseMediaType("application/cbor");
+	byte[] body = mvc.perform(MockMvcRequestBuilders.get(BOOK_API).accept(cbor))
+		.andExpect(status().isOk())
+		.andExpect(content().contentType(cbor))
+		.andReturn()
+		.getResponse()
+		.getContentAsByteArray();
+
+	JsonNode page = new ObjectMapper(new CBORFactory()).readTree(body);
+	assertEquals("As aventuras", page.get("content").get(0).get("title").asText());
+	assertEquals(1, page.get("totalElements").asLong());
+
+    }
+
+    @Test
+    @DisplayName("Should write the page of books as Protobuf when asked for")
+    public void findBookProtobufTest() throws Exception {
+
+	BookDTO book = BookDTO.builder().id(1L).author("Bruno").title("As aventuras").build();
+
+	when(service.findDTOs(any(Book.class), any(Pageable.class), eq(CountMode.EXACT)))
+		.thenReturn(new PageImpl<BookDTO>(Arrays.asList(book), PageRequest.of(0, 100), 1));
+
+	byte[] body = mvc.perform(MockMvcRequestBuilders.get(BOOK_API)
+		.accept(LibraryProtobuf.MEDIA_TYPE))
+		.andExpect(status().isOk())
+		.andExpect(content().contentType(LibraryProtobuf.MEDIA_TYPE))
+		.andReturn()
+		.getResponse()
+		.getContentAsByteArray();
+
+	LibraryMessages.BookPage page = LibraryMessages.BookPage.parseFrom(body);
+	assertEquals(1, page.getContentCount());
+	LibraryMessages.Book bookMessage = page.getContent(0);
+	assertEquals(1L, bookMessage.getId());
+	assertEquals("As aventuras", bookMessage.getTitle());
+	assertEquals("Bruno", bookMessage.getAuthor());
+	assertFalse(bookMessage.hasIsbn());
+	assertEquals(100, page.getSize());
+	assertEquals(1L, page.getTotalElements());
+	assertFalse(page.hasNextCursor());
+
+    }
+
+    @Test
+    @DisplayName("Should find books after a cursor without counting")
+    public void findBookWithCursorTest() throws Exception {
+
+	Book book = Book.builder()
+		.id(7L)
+		.author("Bruno")
+		.title("As aventuras")
+		.isbn("1234")
+		.build();
+
+	when(service.findAfter(any(Book.class), isNull(), anyInt()))
+		.thenReturn(new SliceImpl<Book>(Arrays.asList(book), PageRequest.of(0, 1), true));
+
+	MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API)
+		.queryParam("author", book.getAuthor())
+		.queryParam("cursor", "")
+		.queryParam("size", "1")
+		.accept(MediaType.APPLICATION_JSON);
+
+	mvc.perform(request)
+		.andExpect(status().isOk())
+		.andExpect(jsonPath("content", Matchers.hasSize(1)))
+		.andExpect(jsonPath("content[0].id").value(book.getId()))
+		.andExpect(jsonPath("nextCursor").value(CursorCodec.encode(book.getId())))
+		.andExpect(jsonPath("totalElements").doesNotExist());
+
+	verify(service, never()).findDTOs(any(Book.class), any(Pageable.class), any(CountMode.class));
+
+    }
+
+    @Test
+    @DisplayName("Should return bad request when the cursor is invalid")
+    public void findBookWithInvalidCursorTest() throws Exception {
+
+	MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API)
+		.queryParam("cursor", "not-a-cursor")
+		.accept(MediaType.APPLICATION_JSON);
+
+	mvc.perform(request).andExpect(status().isBadRequest());
+
+    }
+
+    @Test
+    @DisplayName("Should return bad request when the cursor page size is above the maximum")
+    public void findBookAfterAboveMaxSizeTest() throws Exception {
+
+	MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API)
+		.queryParam("cursor", "")
+		.queryParam("size", "2001")
+		.accept(MediaType.APPLICATION_JSON);
+
+	mvc.perform(request).andExpect(status().isBadRequest());
+
+	verify(service, never()).findAfter(any(Book.class), any(), anyInt());
+
+    }
+
+    @Test
+    @DisplayName("Should return bad request when the search size is above the maximum")
+    public void searchBookAboveMaxSizeTest() throws Exception {
+
+	MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API + "/search")
+		.queryParam("q", "aventuras")
+		.queryParam("size", "2001")
+		.accept(MediaType.APPLICATION_JSON);
+
+	mvc.perform(request).andExpect(status().isBadRequest());
+
+	verify(searchService, never()).search(any(), anyInt());
+
+    }
+
+    @Test
+    @DisplayName("Should search books by text")
+    public void searchBookTest() throws Exception {
+
+	Book book = Book.builder()
+		.id(1L)
+		.author("Bruno")
+		.title("As aventuras")
+		.isbn("1234")
+		.build();
+
+	when(searchService.search("aventuras", 20)).thenReturn(Arrays.asList(book));
+
+	MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API + "/search")
+		.queryParam("q", "aventuras")
+		.accept(MediaType.APPLICATION_JSON);
+
+	mvc.perform(request)
+		.andExpect(status().isOk())
+		.andExpect(jsonPath("$", Matchers.hasSize(1)))
+		.andExpect(jsonPath("[0].id").value(book.getId()))
+		.andExpect(jsonPath("[0].title").value(book.getTitle()));
+
+	verifyNoMoreInteractions(service);
+
+    }
+
+    @Test
+    @DisplayName("Should import books from a JSON array")
+    public void importBooksTest() throws Exception {
+
+	List<BookDTO> dtos = Arrays.asList(createNewBook(),
+		BookDTO.builder().author("Bruno").title("Outro").isbn("001").build());
+	String json = new ObjectMapper().writeValueAsString(dtos);
+
+	BookImportResultDTO result = new BookImportResultDTO(1,
+		Arrays.asList(new BookImportErrorDTO(1, "001", "Duplicated ISBN in import")));
+	when(service.importBooks(any())).thenReturn(result);
+
+	MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API + "/import")
+		.contentType(MediaType.APPLICATION_JSON)
+		.accept(MediaType.APPLICATION_JSON)
+		.content(json);
+
+	mvc.perform(request)
+		.andExpect(status().isOk())
+		.andExpect(jsonPath("imported").value(1))
+		.andExpect(jsonPath("errors", Matchers.hasSize(1)))
+		.andExpect(jsonPath("errors[0].row").value(1))
+		.andExpect(jsonPath("errors[0].isbn").value("001"));
+
+	verify(service, times(1)).importBooks(Mockito.argThat(books -> books.size() == 2));
+
+    }
+
+    @Test
+    @DisplayName("Should import books from NDJSON, one book per line")
+    public void importBooksNdjsonTest() throws Exception {
+
+	String ndjson = "{\"title\":\"A\",\"author\":\"Artur\",\"isbn\":\"001\",\"loaned\":true,\"version\":2}\n"
+		+ "{\"title\":\"B\",\"author\":\"Artur\",\"isbn\":\"002\",\"loaned\":false,\"version\":0}\n";
+
+	when(service.importBooks(any()))
+		.thenReturn(new BookImportResultDTO(2, Collections.emptyList()));
+
+	MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API + "/import")
+		.contentType("application/x-ndjson")
+		.accept(MediaType.APPLICATION_JSON)
+		.content(ndjson);
+
+	mvc.perform(request)
+		.andExpect(status().isOk())
+		.andExpect(jsonPath("imported").value(2))
+		.andExpect(jsonPath("errors", Matchers.hasSize(0)));
+
+	verify(service, times(1)).importBooks(Mockito.argThat(books -> books.size() == 2
+		&& "002".equals(books.get(1).getIsbn())));
+
+    }
+
+    @Test
+    @DisplayName("Should import NDJSON in chunks and report errors by their line")
+    public void importBooksNdjsonChunksTest() throws Exception {
+
+	StringBuilder ndjson = new StringBuilder();
+	for (int i = 0; i < 1001; i++) {
+	    ndjson.append("{\"title\":\"A\",\"author\":\"Artur\",\"isbn\":\"" + i + "\"}\n");
+	}
+
+	when(service.importBooks(any()))
+		.thenReturn(new BookImportResultDTO(999, new ArrayList<>(Arrays.asList(
+			new BookImportErrorDTO(3, "3", "Duplicated ISBN in import")))))
+		.thenReturn(new BookImportResultDTO(0, new ArrayList<>(Arrays.asList(
+			new BookImportErrorDTO(0, "1000", "ISBN already being used")))));
+
+	MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API + "/import")
+		.contentType("application/x-ndjson")
+		.accept(MediaType.APPLICATION_JSON)
+		.content(ndjson.toString());
+
+	mvc.perform(request)
+		.andExpect(status().isOk())
+		.andExpect(jsonPath("imported").value(999))
+		.andExpect(jsonPath("errors", Matchers.hasSize(2)))
+		.andExpect(jsonPath("errors[0].row").value(3))
+		.andExpect(jsonPath("errors[1].row").value(1000));
+
+	verify(service, times(1)).importBooks(Mockito.argThat(books -> books.size() == 1000));
+	verify(service, times(1)).importBooks(Mockito.argThat(books -> books.size() == 1
+		&& "1000".equals(books.get(0).getIsbn())));
+
+    }
+
+    @Test
+    @DisplayName("Should return bad request when a NDJSON line is malformed")
+    public void importBooksInvalidNdjsonTest() throws Exception {
+
+	String ndjson = "{\"title\":\"A\",\"author\":\"Artur\",\"isbn\":\"001\",\"loaned\":true}\n"
+		+ "{\"title\":\n";
+
+	MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API + "/import")
+		.contentType("application/x-ndjson")
+		.accept(MediaType.APPLICATION_JSON)
+		.content(ndjson);
+
+	mvc.perform(request).andExpect(status().isBadRequest());
+
+	verify(service, never()).importBooks(any());
+
+    }
+
+    @Test
+    @DisplayName("Should stream the catalog as NDJSON")
+    public void exportBooksTest() throws Exception {
+
+	doAnswer(invocation -> {
+	    Consumer<BookDTO> consumer = invocation.getArgument(0);
+	    consumer.accept(new BookDTO(1L, "As aventuras", "Artur", "001", true, 2L));
+	    consumer.accept(new BookDTO(2L, "Outras, aventuras", "Bruno", "002", false, 0L));
+	    return null;
+	}).when(service).exportBooks(any());
+
+	MvcResult result = mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "/export"))
+		.andExpect(request().asyncStarted())
+		.andReturn();
+
+	mvc.perform(asyncDispatch(result))
+		.andExpect(status().isOk())
+		.andExpect(content().contentType("application/x-ndjson"))
+		.andExpect(content().string(
+			"{\"id\":1,\"title\":\"As aventuras\",\"author\":\"Artur\",\"isbn\":\"001\",\"loaned\":true}\n"
+			+ "{\"id\":2,\"title\":\"Outras, aventuras\",\"author\":\"Bruno\",\"isbn\":\"002\",\"loaned\":false}\n"));
+
+    }
+
+    @Test
+    @DisplayName("Should stream the catalog as CSV")
+    public void exportBooksCsvTest() throws Exception {
+
+	doAnswer(invocation -> {
+	    Consumer<BookDTO> consumer = invocation.getArgument(0);
+	    consumer.accept(new BookDTO(2L, "Outras, \"aventuras\"", "Bruno", "002", false, 0L));
+	    return null;
+	}).when(service).exportBooks(any());
+
+	MvcResult result = mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "/export")
+		.queryParam("format", "CSV"))
+		.andExpect(request().asyncStarted())
+		.andReturn();
+
+	mvc.perform(asyncDispatch(result))
+		.andExpect(status().isOk())
+		.andExpect(content().contentTypeCompatibleWith("text/csv"))
+		.andExpect(content().string("id,title,author,isbn,loaned\r\n"
+			+ "2,\"Outras, \"\"aventuras\"\"\",Bruno,002,false\r\n"));
+
+    }
+
 }
@@ -1,19 +1,31 @@
 package br.com.brunoscatena.libraryapi.api.resource;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
@@ -27,9 +39,11 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
@@ -37,13 +51,21 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanBatchItemDTO;
 import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanExportDTO;
 import br.com.brunoscatena.libraryapi.api.dto.LoanFilterDTO;
+import br.com.brunoscatena.libraryapi.api.dto.ResourceVersionDTO;
 import br.com.brunoscatena.libraryapi.api.dto.ReturnedLoanDTO;
+import br.com.brunoscatena.libraryapi.api.protobuf.LibraryMessages;
+import br.com.brunoscatena.libraryapi.api.protobuf.LibraryProtobuf;
 import br.com.brunoscatena.libraryapi.exception.BusinessException;
 import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
 import br.com.brunoscatena.libraryapi.model.entity.Loan;
 import br.com.brunoscatena.libraryapi.service.BookService;
+import br.com.brunoscatena.libraryapi.service.CustomerService;
 import br.com.brunoscatena.libraryapi.service.LoanService;
 
 @ExtendWith(SpringExtension.class)
@@ -63,6 +85,9 @@ public class LoanControllerTest {
     @MockBean
     private LoanService loanService;
 
+    @MockBean
+    private CustomerService customerService;
+
     private LoanDTO createLoanDTO(String isbn) {
 	return LoanDTO.builder().isbn(isbn).customer("Bruno").build();
     }
@@ -73,7 +98,7 @@ public class LoanControllerTest {
 
 	Loan loan = Loan.builder()
 		.id(1L)
-		.customer("José")
+		.customer(Customer.builder().id(1L).name("José").build())
 		.book(book)
 		.returned(false)
 		.loanDate(LocalDate.now())
@@ -125,14 +150,16 @@ public class LoanControllerTest {
 	String json = new ObjectMapper().writeValueAsString(dto);
 
 	Book book = Book.builder().id(1L).isbn(isbn).build();
+	Customer customer = Customer.builder().id(5L).name(dto.getCustomer()).build();
 	Loan loan = Loan.builder()
 		.id(1L)
-		.customer(dto.getCustomer())
+		.customer(customer)
 		.book(book)
 		.loanDate(LocalDate.now())
 		.build();
 
 	when(bookService.findByIsbn(isbn)).thenReturn(Optional.of(book));
+	when(customerService.findOrCreate(dto.getCustomer())).thenReturn(customer);
 	when(loanService.save(any(Loan.class))).thenReturn(loan);
 
 	MockHttpServletRequestBuilder request = createJsonPostRequest(json);
@@ -140,7 +167,7 @@ public class LoanControllerTest {
 	mvc.perform(request).andExpect(status().isCreated()).andExpect(content().string("1"));
 
 	verify(bookService, times(1)).findByIsbn(isbn);
-	verify(loanService, times(1)).save(any(Loan.class));
+	verify(loanService, times(1)).save(argThat(saved -> saved.getCustomer() == customer));
 
     }
 
@@ -244,6 +271,49 @@ public class LoanControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Should get a loan tagged with the versions of the loan and its book")
+    public void getLoanTest() throws Exception {
+
+	Loan loan = createLoanWithBook();
+	loan.setVersion(2L);
+	loan.getBook().setVersion(5L);
+
+	when(loanService.findById(1L)).thenReturn(Optional.of(loan));
+
+	mvc.perform(MockMvcRequestBuilders.get(LOAN_API + "/1").accept(APPLICATION_JSON))
+		.andExpect(status().isOk())
+		.andExpect(header().string(HttpHeaders.ETAG, "\"7\""))
+		.andExpect(jsonPath("customer").value("José"))
+		.andExpect(jsonPath("isbn").value("1234"));
+
+    }
+
+    @Test
+    @DisplayName("Should answer not modified without loading an unchanged loan")
+    public void getLoanNotModifiedTest() throws Exception {
+
+	when(loanService.findVersion(1L))
+		.thenReturn(Optional.of(new ResourceVersionDTO(7L, Instant.parse("2020-01-10T10:00:00Z"))));
+
+	mvc.perform(MockMvcRequestBuilders.get(LOAN_API + "/1").header(HttpHeaders.IF_NONE_MATCH, "\"7\""))
+		.andExpect(status().isNotModified());
+
+	verify(loanService, never()).findById(anyLong());
+
+    }
+
+    @Test
+    @DisplayName("Should return not found for a conditional get of an unknown loan")
+    public void getLoanNotFoundTest() throws Exception {
+
+	when(loanService.findVersion(1L)).thenReturn(Optional.empty());
+
+	mvc.perform(MockMvcRequestBuilders.get(LOAN_API + "/1").header(HttpHeaders.IF_NONE_MATCH, "\"7\""))
+		.andExpect(status().isNotFound());
+
+    }
+
     @Test
     @DisplayName("Should filter loans")
     public void findLoansTest() throws Exception {
@@ -253,11 +323,15 @@ public class LoanControllerTest {
 	String customer = "José";
 	String isbn = book.getIsbn();
 
-	Loan loan = Loan.builder().book(book).customer(customer).build();
+	LoanDTO loan = LoanDTO.builder()
+		.isbn(isbn)
+		.customer(customer)
+		.book(BookDTO.builder().id(book.getId()).isbn(isbn).build())
+		.build();
 	Pageable pageRequest = PageRequest.of(0, 100);
 
-	when(loanService.find(any(LoanFilterDTO.class), any(Pageable.class)))
-		.thenReturn(new PageImpl<Loan>(Arrays.asList(loan), pageRequest, 1));
+	when(loanService.findDTOs(any(LoanFilterDTO.class), any(Pageable.class)))
+		.thenReturn(new PageImpl<LoanDTO>(Arrays.asList(loan), pageRequest, 1));
 
 	String parameters = String.format("?isbn=%s&customer=%s&page=0&size=100", isbn, customer);
 
@@ -279,4 +353,120 @@ public class LoanControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Should write the page of loans as Protobuf, each with its book")
+    public void findLoansProtobufTest() throws Exception {
+
+	LocalDate dueDate = LocalDate.of(2020, 1, 15);
+	LoanDTO loan = LoanDTO.builder()
+		.id(3L)
+		.customer("José")
+		.book(BookDTO.builder().id(1L).isbn("123").build())
+		.dueDate(dueDate)
+		.build();
+
+	when(loanService.findDTOs(any(LoanFilterDTO.class), any(Pageable.class)))
+		.thenReturn(new PageImpl<LoanDTO>(Arrays.asList(loan), PageRequest.of(0, 100), 1));
+
+	byte[] body = mvc.perform(MockMvcRequestBuilders.get(LOAN_API)
+		.accept(LibraryProtobuf.MEDIA_TYPE))
+		.andExpect(status().isOk())
+		.andReturn()
+		.getResponse()
+		.getContentAsByteArray();
+
+	LibraryMessages.LoanPage page = LibraryMessages.LoanPage.parseFrom(body);
+	assertEquals(1, page.getContentCount());
+	LibraryMessages.Loan loanMessage = page.getContent(0);
+	assertEquals(3L, loanMessage.getId());
+	assertFalse(loanMessage.hasIsbn());
+	assertEquals("José", loanMessage.getCustomer());
+	assertEquals(1L, loanMessage.getBook().getId());
+	assertEquals("123", loanMessage.getBook().getIsbn());
+	assertFalse(loanMessage.getBook().hasTitle());
+	assertEquals(dueDate.toEpochDay(), loanMessage.getDueDate());
+	assertFalse(loanMessage.hasReturnDate());
+	assertEquals(1L, page.getTotalElements());
+
+    }
+
+    @Test
+    @DisplayName("Should stream the loan history as CSV")
+    public void exportLoansCsvTest() throws Exception {
+
+	doAnswer(invocation -> {
+	    Consumer<LoanExportDTO> consumer = invocation.getArgument(0);
+	    consumer.accept(new LoanExportDTO(1L, "Bruno", "123", LocalDate.of(2020, 1, 10), true));
+	    consumer.accept(new LoanExportDTO(2L, "Fulano", "456", LocalDate.of(2020, 1, 11), null));
+	    return null;
+	}).when(loanService).exportLoans(any());
+
+	MvcResult result = mvc.perform(MockMvcRequestBuilders.get(LOAN_API + "/export")
+		.queryParam("format", "CSV"))
+		.andExpect(request().asyncStarted())
+		.andReturn();
+
+	mvc.perform(asyncDispatch(result))
+		.andExpect(status().isOk())
+		.andExpect(content().string("id,customer,isbn,loanDate,returned\r\n"
+			+ "1,Bruno,123,2020-01-10,true\r\n"
+			+ "2,Fulano,456,2020-01-11,\r\n"));
+
+    }
+
+    @Test
+    @DisplayName("Should create a batch of loans reporting each item")
+    public void createLoanBatchTest() throws Exception {
+
+	List<LoanDTO> dtos = Arrays.asList(createLoanDTO("123"), createLoanDTO("999"),
+		createLoanDTO("456"));
+	String json = new ObjectMapper().writeValueAsString(dtos);
+
+	Book book1 = Book.builder().id(1L).isbn("123").build();
+	Book book2 = Book.builder().id(2L).isbn("456").build();
+
+	when(bookService.findByIsbnIn(any())).thenReturn(Arrays.asList(book1, book2));
+	when(customerService.findOrCreateAll(any())).thenReturn(
+		Collections.singletonMap("Bruno", Customer.builder().id(5L).name("Bruno").build()));
+	when(loanService.saveAll(any())).thenReturn(Arrays.asList(
+		LoanBatchItemDTO.builder().index(0).id(10L).isbn("123").build(),
+		LoanBatchItemDTO.builder().index(1).isbn("456").error("Book already loaned").build()));
+
+	MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(LOAN_API + "/batch")
+		.accept(APPLICATION_JSON)
+		.contentType(APPLICATION_JSON)
+		.content(json);
+
+	mvc.perform(request)
+		.andExpect(status().isOk())
+		.andExpect(jsonPath("$", Matchers.hasSize(3)))
+		.andExpect(jsonPath("[0].id").value(10))
+		.andExpect(jsonPath("[0].error").doesNotExist())
+		.andExpect(jsonPath("[1].index").value(1))
+		.andExpect(jsonPath("[1].error").value("Book not found for passed ISBN"))
+		.andExpect(jsonPath("[2].index").value(2))
+		.andExpect(jsonPath("[2].error").value("Book already loaned"));
+
+	verify(bookService, times(1)).findByIsbnIn(any());
+	verify(customerService, times(1)).findOrCreateAll(Collections.singleton("Bruno"));
+	verify(loanService, times(1)).saveAll(argThat(loans -> loans.size() == 2
+		&& loans.stream().allMatch(loan -> loan.getCustomer().getId() == 5L)));
+
+    }
+
+    @Test
+    @DisplayName("Should return bad request when the cursor page size is above the maximum")
+    public void findLoanAfterAboveMaxSizeTest() throws Exception {
+
+	MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(LOAN_API)
+		.queryParam("cursor", "")
+		.queryParam("size", "2001")
+		.accept(APPLICATION_JSON);
+
+	mvc.perform(request).andExpect(status().isBadRequest());
+
+	verify(loanService, never()).findAfter(any(), any(), anyInt());
+
+    }
+
 }
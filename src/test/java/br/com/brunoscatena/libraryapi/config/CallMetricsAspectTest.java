@@ -0,0 +1,74 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import br.com.brunoscatena.libraryapi.exception.BusinessException;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.service.BookService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class CallMetricsAspectTest {
+
+    @MockBean
+    BookService target;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private BookService bookService;
+
+    @BeforeEach
+    public void setUp() {
+	meterRegistry = new SimpleMeterRegistry();
+
+	AspectJProxyFactory factory = new AspectJProxyFactory(target);
+	factory.addAspect(new CallMetricsAspect(meterRegistry));
+	bookService = factory.getProxy();
+    }
+
+    @Test
+    @DisplayName("Should time service calls by class and method")
+    public void timeServiceTest() {
+
+	when(target.findById(1L)).thenReturn(Optional.of(Book.builder().id(1L).build()));
+
+	bookService.findById(1L);
+	bookService.findById(1L);
+
+	assertThat(meterRegistry.get(CallMetricsAspect.SERVICE_TIMER)
+		.tags("class", "BookService", "method", "findById", "exception", "none")
+		.timer()
+		.count()).isEqualTo(2);
+
+    }
+
+    @Test
+    @DisplayName("Should tag failed service calls with the exception")
+    public void timeFailedServiceTest() {
+
+	when(target.save(null)).thenThrow(new BusinessException("ISBN already being used"));
+
+	assertThrows(BusinessException.class, () -> bookService.save(null));
+
+	assertThat(meterRegistry.get(CallMetricsAspect.SERVICE_TIMER)
+		.tags("method", "save", "exception", "BusinessException")
+		.timer()
+		.count()).isEqualTo(1);
+
+    }
+
+}
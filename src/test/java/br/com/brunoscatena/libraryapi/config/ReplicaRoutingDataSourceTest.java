@@ -0,0 +1,140 @@
+package br.com.brunoscatena.libraryapi.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/*
+ * Two H2 databases stand in for the primary and its replica; each one knows
+ * its own name, so the queries show where they were routed.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ReplicaLagMonitor lagMonitor;
+    private JdbcTemplate replica;
+    private JdbcTemplate routed;
+
+    @BeforeEach
+    public void setUp() {
+	meterRegistry = new SimpleMeterRegistry();
+
+	DataSource primaryDataSource = node("primary");
+	DataSource replicaDataSource = node("replica-0");
+	replica = new JdbcTemplate(replicaDataSource);
+	replica.execute("CREATE TABLE replica_lag (seconds DOUBLE)");
+	replica.update("INSERT INTO replica_lag VALUES (0.2)");
+
+	Map<String, DataSource> replicas = new LinkedHashMap<>();
+	replicas.put("replica-0", replicaDataSource);
+	lagMonitor = new ReplicaLagMonitor(replicas, "SELECT seconds FROM replica_lag",
+		Duration.ofSeconds(5), meterRegistry);
+	lagMonitor.refresh();
+
+	routed = new JdbcTemplate(new LazyConnectionDataSourceProxy(
+		new ReplicaRoutingDataSource(primaryDataSource, lagMonitor, meterRegistry)));
+    }
+
+    private static DataSource node(String name) {
+	DriverManagerDataSource dataSource = new DriverManagerDataSource(
+		"jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+	JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+	jdbcTemplate.execute("DROP ALL OBJECTS");
+	jdbcTemplate.execute("CREATE TABLE node (name VARCHAR(20))");
+	jdbcTemplate.update("INSERT INTO node VALUES (?)", name);
+	return dataSource;
+    }
+
+    @AfterEach
+    public void tearDown() {
+	ReplicaRoutingDataSource.restore(null);
+    }
+
+    private String node() {
+	return routed.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    @Test
+    @DisplayName("Should read from the primary outside replica reads")
+    public void primaryByDefaultTest() {
+
+	assertThat(node()).isEqualTo("primary");
+	assertThat(meterRegistry.get("library.datasource.routes")
+		.tags("target", "primary", "reason", "required")
+		.counter()
+		.count()).isPositive();
+
+    }
+
+    @Test
+    @DisplayName("Should read from a replica within the lag tolerance")
+    public void replicaReadTest() {
+
+	ReplicaRoutingDataSource.allowReplicas(1000);
+
+	assertThat(node()).isEqualTo("replica-0");
+	assertThat(meterRegistry.get("library.datasource.routes")
+		.tags("target", "replica-0", "reason", "read")
+		.counter()
+		.count()).isEqualTo(1);
+	assertThat(meterRegistry.get("library.datasource.replica.lag")
+		.tag("replica", "replica-0")
+		.gauge()
+		.value()).isEqualTo(200);
+
+    }
+
+    @Test
+    @DisplayName("Should read from the primary when the replica lags too far behind")
+    public void laggingReplicaTest() {
+
+	replica.update("UPDATE replica_lag SET seconds = 10");
+	lagMonitor.refresh();
+	Long previous = ReplicaRoutingDataSource.allowReplicas(5000);
+	ReplicaRoutingDataSource.allowReplicas(30000);
+
+	assertThat(node()).isEqualTo("primary");
+	assertThat(meterRegistry.get("library.datasource.routes")
+		.tags("target", "primary", "reason", "lagging")
+		.counter()
+		.count()).isEqualTo(1);
+
+	ReplicaRoutingDataSource.restore(previous);
+	assertThat(node()).isEqualTo("primary");
+
+    }
+
+    @Test
+    @DisplayName("Should read from the primary inside a read-write transaction")
+    public void readWriteTransactionTest() {
+
+	ReplicaRoutingDataSource.allowReplicas(1000);
+	TransactionSynchronizationManager.setActualTransactionActive(true);
+	try {
+	    assertThat(node()).isEqualTo("primary");
+
+	    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+	    assertThat(node()).isEqualTo("replica-0");
+	} finally {
+	    TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+	    TransactionSynchronizationManager.setActualTransactionActive(false);
+	}
+
+    }
+
+}
@@ -1,18 +1,35 @@
 package br.com.brunoscatena.libraryapi.model.repository;
 
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.ResourceVersionDTO;
 import br.com.brunoscatena.libraryapi.model.entity.Book;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -29,36 +46,6 @@ public class BookRepositoryTest {
 	return Book.builder().author("Bruno").title("As aventuras").isbn("1234").build();
     }
 
-    @Test
-    @DisplayName("Should return true when there is alreay a ISBN on database")
-    public void returnTrueWhenIsbnExists() {
-
-	// arrange
-	String isbn = "1234";
-	Book book = Book.builder().author("Some One").title("Adventures").isbn(isbn).build();
-	entityManager.persistAndFlush(book);
-
-	// act
-	boolean exists = this.bookRepository.existsByIsbn(isbn);
-
-	// assert
-	assertThat(exists).isTrue();
-
-    }
-
-    @Test
-    @DisplayName("Should return false when there is no ISBN on database")
-    public void returnFalseWhenIsbnDoesNotExists() {
-	// arrange
-	String isbn = "1234";
-
-	// act
-	boolean exists = this.bookRepository.existsByIsbn(isbn);
-
-	// assert
-	assertThat(exists).isFalse();
-    }
-
     @Test
     @DisplayName("Should find book by id")
     public void findByIdTest() {
@@ -93,4 +80,187 @@ public class BookRepositoryTest {
 
     }
 
+    @Test
+    @DisplayName("Should find books after the last seen id")
+    public void findAfterTest() {
+
+	Book first = entityManager.persist(createBook());
+	Book second = createBook();
+	second.setIsbn("4321");
+	second = entityManager.persist(second);
+	Book other = createBook();
+	other.setAuthor("Someone else");
+	other.setIsbn("9999");
+	entityManager.persist(other);
+
+	Slice<Book> firstSlice = bookRepository.findAfter(null, "bru", null, null, 0L, PageRequest.of(0, 1));
+	Slice<Book> secondSlice = bookRepository.findAfter(null, "bru", null, null, first.getId(),
+		PageRequest.of(0, 1));
+
+	assertThat(firstSlice.getContent()).containsExactly(first);
+	assertThat(firstSlice.hasNext()).isTrue();
+	assertThat(secondSlice.getContent()).containsExactly(second);
+	assertThat(secondSlice.hasNext()).isFalse();
+
+    }
+
+    @Test
+    @DisplayName("Should reject a second book with the same ISBN")
+    public void duplicatedIsbnTest() {
+
+	bookRepository.saveAndFlush(createBook());
+
+	assertThrows(DataIntegrityViolationException.class,
+		() -> bookRepository.saveAndFlush(createBook()));
+
+    }
+
+    @Test
+    @DisplayName("Should stream every book as a DTO ordered by id")
+    public void streamAllForExportTest() {
+
+	Book first = entityManager.persist(createBook());
+	Book second = createBook();
+	second.setIsbn("4321");
+	second = entityManager.persist(second);
+	entityManager.flush();
+	entityManager.clear();
+
+	List<BookDTO> exported;
+	try (Stream<BookDTO> books = bookRepository.streamAllForExport()) {
+	    exported = books.collect(Collectors.toList());
+	}
+
+	assertThat(exported).extracting("id").containsExactly(first.getId(), second.getId());
+	assertThat(exported).extracting("isbn").containsExactly("1234", "4321");
+
+    }
+
+    @Test
+    @DisplayName("Should mark a book as loaned only once")
+    public void markLoanedTest() {
+
+	Book book = entityManager.persistAndFlush(createBook());
+	Long version = book.getVersion();
+
+	int first = bookRepository.markLoaned(book.getId());
+	int second = bookRepository.markLoaned(book.getId());
+
+	assertThat(first).isEqualTo(1);
+	assertThat(second).isEqualTo(0);
+	entityManager.refresh(book);
+	assertThat(book.getLoaned()).isTrue();
+	assertThat(book.getVersion()).isEqualTo(version + 1);
+
+    }
+
+    @Test
+    @DisplayName("Should lock the books of a batch in id order")
+    public void findAllByIdForUpdateTest() {
+
+	Book first = entityManager.persist(createBook());
+	Book second = createBook();
+	second.setIsbn("4321");
+	second = entityManager.persist(second);
+	Book other = createBook();
+	other.setIsbn("9999");
+	entityManager.persist(other);
+	entityManager.flush();
+
+	List<Book> books = bookRepository.findAllByIdForUpdate(
+		Arrays.asList(second.getId(), first.getId()));
+
+	assertThat(books).extracting("id").containsExactly(first.getId(), second.getId());
+
+    }
+
+    @Test
+    @DisplayName("Should read the version of a book without loading it")
+    public void findVersionByIdTest() {
+
+	Book book = entityManager.persistAndFlush(createBook());
+	book.setTitle("Outras aventuras");
+	entityManager.flush();
+
+	Optional<ResourceVersionDTO> version = bookRepository.findVersionById(book.getId());
+
+	assertThat(version.get().getVersion()).isEqualTo(1L);
+	assertThat(version.get().getLastModified()).isNotNull();
+	assertThat(bookRepository.findVersionById(book.getId() + 1)).isEmpty();
+
+    }
+
+    @Test
+    @DisplayName("Should filter books by the loaned flag")
+    public void findLoanedTest() {
+
+	Book loaned = entityManager.persist(createBook());
+	Book available = createBook();
+	available.setIsbn("4321");
+	available = entityManager.persist(available);
+	entityManager.flush();
+	bookRepository.updateLoaned(Arrays.asList(loaned.getId()), true);
+	entityManager.clear();
+
+	Slice<Book> availableSlice = bookRepository.findAfter(null, null, null, false, 0L,
+		PageRequest.of(0, 10));
+	Slice<Book> loanedSlice = bookRepository.findAfter(null, null, null, true, 0L,
+		PageRequest.of(0, 10));
+
+	assertThat(availableSlice.getContent()).extracting("id").containsExactly(available.getId());
+	assertThat(loanedSlice.getContent()).extracting("id").containsExactly(loaned.getId());
+
+    }
+
+    @Test
+    @DisplayName("Should find books as DTOs without managing them")
+    public void findDTOsTest() {
+
+	Book book = entityManager.persist(createBook());
+	Book other = createBook();
+	other.setIsbn("4321");
+	other.setTitle("Outro livro");
+	entityManager.persist(other);
+	entityManager.flush();
+	entityManager.clear();
+
+	Page<BookDTO> page = bookRepository.findDTOs("AVENTURAS", null, null, null,
+		PageRequest.of(0, 10, Sort.by("title")));
+
+	assertThat(page.getTotalElements()).isEqualTo(1);
+	assertThat(page.getContent()).extracting("id", "isbn", "loaned", "version")
+		.containsExactly(tuple(book.getId(), "1234", false, book.getVersion()));
+	assertThat(entityManager.getEntityManager().unwrap(Session.class).getStatistics()
+		.getEntityCount()).isZero();
+	assertThat(bookRepository.findDTOSlice(null, null, null, false, PageRequest.of(0, 1))
+		.hasNext()).isTrue();
+
+    }
+
+    @Test
+    @DisplayName("Should read a book loaded before from the second-level cache")
+    public void secondLevelCacheTest() {
+
+	Book book = entityManager.persistFlushFind(createBook());
+	entityManager.clear();
+
+	SessionFactory sessionFactory = entityManager.getEntityManager()
+		.getEntityManagerFactory()
+		.unwrap(SessionFactory.class);
+	sessionFactory.getCache().evictAllRegions();
+	Statistics statistics = sessionFactory.getStatistics();
+	statistics.clear();
+
+	bookRepository.findById(book.getId());
+	entityManager.clear();
+	Optional<Book> cached = bookRepository.findById(book.getId());
+
+	CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(Book.CACHE_REGION);
+	assertThat(cached).map(Book::getIsbn).contains("1234");
+	assertThat(region.getMissCount()).isEqualTo(1);
+	assertThat(region.getHitCount()).isEqualTo(1);
+	assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+    }
+
 }
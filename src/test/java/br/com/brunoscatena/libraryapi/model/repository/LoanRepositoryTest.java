@@ -1,23 +1,34 @@
 package br.com.brunoscatena.libraryapi.model.repository;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDate;
 
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
+import br.com.brunoscatena.libraryapi.api.dto.OverdueLoanDTO;
 import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
 import br.com.brunoscatena.libraryapi.model.entity.Loan;
 
 @ExtendWith(SpringExtension.class)
@@ -36,56 +47,55 @@ public class LoanRepositoryTest {
     }
 
     private Loan createValidLoan(Book book) {
-	return Loan.builder().book(book).customer("Rafael").loanDate(LocalDate.now()).build();
+	return Loan.builder().book(book).loanDate(LocalDate.now()).build();
     }
 
-    @Test
-    @DisplayName("Should verify if there is a not returned loan for a book ")
-    public void existsByBookIdAndReturnedTest() {
-
-	Book book = createBookWithoutId();
-	entityManager.persist(book);
+    private Book book1;
 
-	Loan loan = createValidLoan(book);
-	entityManager.persist(loan);
+    private Book book2;
 
-	boolean exists = loanRepository.existsByBookIdAndNotReturned(book);
+    private Customer rafael;
 
-	assertTrue(exists);
-
-    }
+    private Customer bruno;
 
     public void findBookTestSetup() {
 
-	Book book1 = createBookWithoutId();
+	book1 = createBookWithoutId();
 
-	Book book2 = createBookWithoutId();
+	book2 = createBookWithoutId();
 	book2.setIsbn("1111");
 
 	entityManager.persist(book1);
 	entityManager.persist(book2);
 
+	rafael = entityManager.persist(Customer.builder().name("Rafael").build());
+	bruno = entityManager.persist(Customer.builder().name("Bruno").build());
+
+	// a book has at most one open loan, so the first loan of book1 was returned
 	Loan loan1 = createValidLoan(book1);
+	loan1.setReturned(true);
+	loan1.setCustomer(rafael);
 	entityManager.persist(loan1);
 
 	Loan loan2 = createValidLoan(book1);
+	loan2.setCustomer(rafael);
 	entityManager.persist(loan2);
 
 	Loan loan3 = createValidLoan(book2);
-	loan3.setCustomer("Bruno");
+	loan3.setCustomer(bruno);
 	entityManager.persist(loan3);
 
     }
 
     @Test
-    @DisplayName("Should find loan when passing isbn but no customer")
-    public void findPassingIsbnAndNoCustomerTest() {
+    @DisplayName("Should find the loans of a book")
+    public void findByBookIdTest() {
 
 	findBookTestSetup();
 
 	Pageable pageRequest = PageRequest.of(0, 10);
 
-	Page<Loan> result = loanRepository.findByBookIsbnOrCustomer("1234", null, pageRequest);
+	Page<LoanDTO> result = loanRepository.findDTOsByBookId(book1.getId(), pageRequest);
 
 	assertEquals(result.getNumberOfElements(), 2);
 	assertEquals(result.getPageable().getPageNumber(), 0);
@@ -94,14 +104,14 @@ public class LoanRepositoryTest {
     }
 
     @Test
-    @DisplayName("Should find loan when passing customer but no isbn")
-    public void findPassingCustomerAndNoIsbnTest() {
+    @DisplayName("Should find the loans of a customer")
+    public void findByCustomerIdTest() {
 
 	findBookTestSetup();
 
 	Pageable pageRequest = PageRequest.of(0, 10);
 
-	Page<Loan> result = loanRepository.findByBookIsbnOrCustomer(null, "Rafael", pageRequest);
+	Page<LoanDTO> result = loanRepository.findDTOsByCustomerId(rafael.getId(), pageRequest);
 
 	assertEquals(result.getNumberOfElements(), 2);
 	assertEquals(result.getPageable().getPageNumber(), 0);
@@ -110,18 +120,157 @@ public class LoanRepositoryTest {
     }
 
     @Test
-    @DisplayName("Should find loan when passing isbn and customer")
-    public void findPassingCustomerAndIsbnTest() {
+    @DisplayName("Should find loans with their books as DTOs")
+    public void findDTOsTest() {
 
 	findBookTestSetup();
+	entityManager.clear();
 
-	Pageable pageRequest = PageRequest.of(0, 10);
+	Page<LoanDTO> result = loanRepository.findDTOsByCustomerId(bruno.getId(),
+		PageRequest.of(0, 10));
 
-	Page<Loan> result = loanRepository.findByBookIsbnOrCustomer("1111", "Bruno", pageRequest);
+	assertEquals(1, result.getTotalElements());
+	LoanDTO loan = result.getContent().get(0);
+	assertEquals("Bruno", loan.getCustomer());
+	assertEquals("1111", loan.getIsbn());
+	assertEquals("1111", loan.getBook().getIsbn());
+	assertEquals("As aventuras", loan.getBook().getTitle());
+	assertEquals(LocalDate.now().plus(Loan.LOAN_PERIOD), loan.getDueDate());
+	assertEquals(2, loanRepository.findDTOsByBookId(book1.getId(), PageRequest.of(0, 10))
+		.getTotalElements());
 
-	assertEquals(result.getNumberOfElements(), 1);
-	assertEquals(result.getPageable().getPageNumber(), 0);
-	assertEquals(result.getPageable().getPageSize(), 10);
+    }
+
+    @Test
+    @DisplayName("Should count the loans matched by both the book and the customer")
+    public void countByBookIdAndCustomerIdTest() {
+
+	findBookTestSetup();
+
+	assertEquals(2, loanRepository.countByBookIdAndCustomerId(book1.getId(), rafael.getId()));
+	assertEquals(0, loanRepository.countByBookIdAndCustomerId(book2.getId(), rafael.getId()));
+
+    }
+
+    @Test
+    @DisplayName("Should load loans, their books and customers in a single statement")
+    public void findLoadsBooksInSameStatementTest() {
+
+	findBookTestSetup();
+	entityManager.flush();
+	entityManager.clear();
+
+	Statistics statistics = entityManager.getEntityManager()
+		.getEntityManagerFactory()
+		.unwrap(SessionFactory.class)
+		.getStatistics();
+	statistics.setStatisticsEnabled(true);
+	statistics.clear();
+
+	Slice<Loan> result = loanRepository.findAfter(0L, PageRequest.of(0, 10));
+
+	assertEquals(3, result.getNumberOfElements());
+	result.forEach(loan -> assertTrue(Hibernate.isInitialized(loan.getBook())));
+	result.forEach(loan -> assertTrue(Hibernate.isInitialized(loan.getCustomer())));
+	assertEquals(1, statistics.getPrepareStatementCount());
+
+    }
+
+    @Test
+    @DisplayName("Should find loans after the last seen id")
+    public void findAfterTest() {
+
+	findBookTestSetup();
+
+	Slice<Loan> firstSlice = loanRepository.findAfterByBookId(book1.getId(), 0L,
+		PageRequest.of(0, 1));
+	Long lastId = firstSlice.getContent().get(0).getId();
+	Slice<Loan> secondSlice = loanRepository.findAfterByBookId(book1.getId(), lastId,
+		PageRequest.of(0, 1));
+
+	assertEquals(1, firstSlice.getNumberOfElements());
+	assertTrue(firstSlice.hasNext());
+	assertEquals(1, secondSlice.getNumberOfElements());
+	assertTrue(secondSlice.getContent().get(0).getId() > lastId);
+	assertEquals(false, secondSlice.hasNext());
+
+    }
+
+    @Test
+    @DisplayName("Should reject a second open loan for the same book")
+    public void secondActiveLoanTest() {
+
+	Book book = entityManager.persist(createBookWithoutId());
+	loanRepository.saveAndFlush(createValidLoan(book));
+
+	assertThrows(DataIntegrityViolationException.class,
+		() -> loanRepository.saveAndFlush(createValidLoan(book)));
+
+    }
+
+    @Test
+    @DisplayName("Should accept a new loan once the previous one was returned")
+    public void loanAfterReturnTest() {
+
+	Book book = entityManager.persist(createBookWithoutId());
+	Loan returnedLoan = createValidLoan(book);
+	returnedLoan.setReturned(true);
+	loanRepository.saveAndFlush(returnedLoan);
+
+	assertDoesNotThrow(() -> loanRepository.saveAndFlush(createValidLoan(book)));
+
+    }
+
+    @Test
+    @DisplayName("Should find open loans due before today after the last one seen")
+    public void findOverdueAfterTest() {
+
+	LocalDate today = LocalDate.now();
+	Book overdueBook = entityManager.persist(createBookWithoutId());
+	Book otherOverdueBook = createBookWithoutId();
+	otherOverdueBook.setIsbn("1111");
+	entityManager.persist(otherOverdueBook);
+	Book dueBook = createBookWithoutId();
+	dueBook.setIsbn("2222");
+	entityManager.persist(dueBook);
+
+	Loan overdue = createValidLoan(overdueBook);
+	overdue.setDueDate(today.minusDays(2));
+	entityManager.persist(overdue);
+	Loan otherOverdue = createValidLoan(otherOverdueBook);
+	otherOverdue.setDueDate(today.minusDays(1));
+	entityManager.persist(otherOverdue);
+	Loan returned = createValidLoan(dueBook);
+	returned.setDueDate(today.minusDays(3));
+	returned.setReturned(true);
+	entityManager.persist(returned);
+	Loan due = createValidLoan(dueBook);
+	due.setDueDate(today);
+	entityManager.persist(due);
+	entityManager.flush();
+
+	Slice<OverdueLoanDTO> firstChunk = loanRepository.findOverdueAfter(today,
+		LocalDate.of(1970, 1, 1), 0L, PageRequest.of(0, 1));
+	Slice<OverdueLoanDTO> secondChunk = loanRepository.findOverdueAfter(today,
+		overdue.getDueDate(), overdue.getId(), PageRequest.of(0, 1));
+
+	assertEquals(overdue.getId(), firstChunk.getContent().get(0).getId());
+	assertEquals(today.minusDays(2), firstChunk.getContent().get(0).getDueDate());
+	assertTrue(firstChunk.hasNext());
+	assertEquals(otherOverdue.getId(), secondChunk.getContent().get(0).getId());
+	assertEquals("1111", secondChunk.getContent().get(0).getIsbn());
+	assertFalse(secondChunk.hasNext());
+
+    }
+
+    @Test
+    @DisplayName("Should default the due date from the loan date")
+    public void defaultDueDateTest() {
+
+	Book book = entityManager.persist(createBookWithoutId());
+	Loan loan = entityManager.persist(createValidLoan(book));
+
+	assertEquals(loan.getLoanDate().plus(Loan.LOAN_PERIOD), loan.getDueDate());
 
     }
 
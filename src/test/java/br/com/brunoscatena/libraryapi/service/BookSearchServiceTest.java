@@ -0,0 +1,147 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
+import br.com.brunoscatena.libraryapi.service.impl.LuceneBookSearchService;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class BookSearchServiceTest {
+
+    @MockBean
+    BookRepository bookRepository;
+
+    LuceneBookSearchService searchService;
+
+    @BeforeEach
+    public void setUp() {
+	this.searchService = new LuceneBookSearchService(bookRepository, "");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+	searchService.close();
+    }
+
+    private Book createBook(Long id, String title, String author, String isbn) {
+	return Book.builder().id(id).title(title).author(author).isbn(isbn).build();
+    }
+
+    @Test
+    @DisplayName("Should find indexed books by title and author")
+    public void searchTest() {
+
+	searchService.index(createBook(1L, "As aventuras de Pi", "Yann Martel", "111"));
+	searchService.index(createBook(2L, "Dom Casmurro", "Machado de Assis", "222"));
+
+	List<Book> byTitle = searchService.search("AVENTURAS", 10);
+	List<Book> byAuthor = searchService.search("machado", 10);
+
+	assertThat(byTitle).extracting(Book::getId).containsExactly(1L);
+	assertThat(byTitle.get(0).getTitle()).isEqualTo("As aventuras de Pi");
+	assertThat(byAuthor).extracting(Book::getId).containsExactly(2L);
+
+    }
+
+    @Test
+    @DisplayName("Should not find books removed or replaced in the index")
+    public void removeAndUpdateTest() {
+
+	Book book = createBook(1L, "As aventuras", "Bruno", "111");
+	searchService.index(book);
+
+	book.setTitle("Outro titulo");
+	searchService.index(book);
+
+	assertThat(searchService.search("aventuras", 10)).isEmpty();
+	assertThat(searchService.search("titulo", 10)).hasSize(1);
+
+	searchService.remove(book);
+
+	assertThat(searchService.search("titulo", 10)).isEmpty();
+
+    }
+
+    @Test
+    @DisplayName("Should rebuild the index from the database over the indexed books")
+    public void rebuildTest() {
+
+	searchService.index(createBook(1L, "Titulo antigo", "Bruno", "111"));
+
+	List<Book> books = Arrays.asList(createBook(1L, "As aventuras", "Bruno", "111"),
+		createBook(2L, "Dom Casmurro", "Machado de Assis", "222"));
+
+	when(bookRepository.findAfter(isNull(), isNull(), isNull(), isNull(), eq(0L), any(Pageable.class)))
+		.thenReturn(new SliceImpl<Book>(books, PageRequest.of(0, 1000), false));
+
+	searchService.rebuild();
+
+	assertThat(searchService.search("antigo", 10)).isEmpty();
+	assertThat(searchService.search("bruno", 10)).extracting(Book::getId).containsExactly(1L);
+	assertThat(searchService.search("222", 10)).extracting(Book::getId).containsExactly(2L);
+
+    }
+
+    @Test
+    @DisplayName("Should not add back a book removed while the rebuild runs")
+    public void rebuildRemovedMeanwhileTest() {
+
+	Book removed = createBook(1L, "As aventuras", "Bruno", "111");
+	List<Book> books = Arrays.asList(removed, createBook(2L, "Dom Casmurro", "Bruno", "222"));
+
+	when(bookRepository.findAfter(isNull(), isNull(), isNull(), isNull(), eq(0L), any(Pageable.class)))
+		.thenAnswer(invocation -> {
+		    searchService.remove(removed);
+		    return new SliceImpl<Book>(books, PageRequest.of(0, 1000), false);
+		});
+
+	searchService.rebuild();
+
+	assertThat(searchService.search("bruno", 10)).extracting(Book::getId).containsExactly(2L);
+
+    }
+
+    @Test
+    @DisplayName("Should only rebuild an empty index on startup")
+    public void rebuildIfEmptyTest() {
+
+	searchService.index(createBook(1L, "As aventuras", "Bruno", "111"));
+
+	searchService.rebuildIfEmpty();
+
+	verify(bookRepository, never()).findAfter(any(), any(), any(), any(), any(), any(Pageable.class));
+	assertThat(searchService.search("aventuras", 10)).extracting(Book::getId).containsExactly(1L);
+
+    }
+
+    @Test
+    @DisplayName("Should return nothing for a blank query")
+    public void blankQueryTest() {
+	assertThat(searchService.search("  ", 10)).isEmpty();
+    }
+
+}
@@ -0,0 +1,109 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
+import br.com.brunoscatena.libraryapi.model.entity.Loan;
+import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
+import br.com.brunoscatena.libraryapi.model.repository.CustomerRepository;
+import br.com.brunoscatena.libraryapi.model.repository.LoanRepository;
+
+/**
+ * The second-level cache of books across a loan: books are served from the
+ * region until the loaned flag bulk update of a loan empties it, so the loaned
+ * book is read again rather than served stale.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class BookServiceCacheLoanTest {
+
+    private static final String CUSTOMER = "Cache test customer";
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    CustomerService customerService;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    private Book loaned;
+    private Book other;
+
+    @BeforeEach
+    public void setUp() {
+	loaned = bookRepository.saveAndFlush(
+		Book.builder().author("Bruno").title("As aventuras").isbn("cache-1").build());
+	other = bookRepository.saveAndFlush(
+		Book.builder().author("Bruno").title("Outro livro").isbn("cache-2").build());
+    }
+
+    @AfterEach
+    public void tearDown() {
+	loanRepository.deleteAll(
+		loanRepository.findAfterByBookId(loaned.getId(), 0L, PageRequest.of(0, 10)));
+	customerRepository.findIdByName(CUSTOMER).ifPresent(customerRepository::deleteById);
+	bookRepository.deleteById(loaned.getId());
+	bookRepository.deleteById(other.getId());
+    }
+
+    @Test
+    @DisplayName("Should serve books from the second-level cache and reread them after a loan")
+    public void cacheAcrossLoanTest() {
+
+	// Arrange
+	bookService.findById(loaned.getId());
+	bookService.findById(other.getId());
+	Customer customer = customerService.findOrCreate(CUSTOMER);
+	Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	statistics.clear();
+
+	// Act
+	Book cachedOther = bookService.findById(other.getId()).get();
+	loanService.save(Loan.builder().book(loaned).customer(customer).loanDate(LocalDate.now()).build());
+	Book reloaned = bookService.findById(loaned.getId()).get();
+
+	// Assert
+	CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(Book.CACHE_REGION);
+	assertEquals(1, region.getHitCount());
+	assertEquals(1, region.getMissCount());
+	assertFalse(cachedOther.getLoaned());
+	assertTrue(reloaned.getLoaned());
+    }
+
+}
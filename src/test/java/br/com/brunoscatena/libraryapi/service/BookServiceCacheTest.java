@@ -0,0 +1,144 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
+import br.com.brunoscatena.libraryapi.service.impl.BookServiceImpl;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@ContextConfiguration(classes = BookServiceCacheTest.CacheTestConfiguration.class)
+public class BookServiceCacheTest {
+
+    @Configuration
+    @EnableCaching
+    static class CacheTestConfiguration {
+
+	@Bean
+	public CacheManager cacheManager() {
+	    return new TransactionAwareCacheManagerProxy(
+		    new ConcurrentMapCacheManager(BookServiceImpl.BOOKS_BY_ISBN_CACHE));
+	}
+
+	@Bean
+	public BookService bookService(BookRepository bookRepository) {
+	    return new BookServiceImpl(bookRepository);
+	}
+    }
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @MockBean
+    BookRepository bookRepository;
+
+    @BeforeEach
+    public void setUp() {
+	cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    private Book createValidBookWithId() {
+	return Book.builder().id(1L).author("Bruno").title("As aventuras").isbn("1234").build();
+    }
+
+    @Test
+    @DisplayName("Should hit the repository only once for repeated lookups by ISBN")
+    public void cachedLookupTest() {
+
+	Book book = createValidBookWithId();
+	when(bookRepository.findByIsbn("1234")).thenReturn(Optional.of(book));
+
+	assertThat(bookService.findByIsbn("1234")).contains(book);
+	assertThat(bookService.findByIsbn("1234")).contains(book);
+
+	verify(bookRepository, times(1)).findByIsbn("1234");
+
+    }
+
+    @Test
+    @DisplayName("Should not cache books that were not found")
+    public void absentBookNotCachedTest() {
+
+	when(bookRepository.findByIsbn("1234")).thenReturn(Optional.empty());
+
+	assertThat(bookService.findByIsbn("1234")).isEmpty();
+	assertThat(bookService.findByIsbn("1234")).isEmpty();
+
+	verify(bookRepository, times(2)).findByIsbn("1234");
+
+    }
+
+    @Test
+    @DisplayName("Should evict cached lookups when a book is updated or deleted")
+    public void evictOnWriteTest() {
+
+	Book book = createValidBookWithId();
+	when(bookRepository.findByIsbn("1234")).thenReturn(Optional.of(book));
+	when(bookRepository.saveAndFlush(book)).thenReturn(book);
+
+	bookService.findByIsbn("1234");
+	bookService.update(book);
+	bookService.findByIsbn("1234");
+	bookService.delete(book);
+	bookService.findByIsbn("1234");
+
+	verify(bookRepository, times(3)).findByIsbn("1234");
+
+    }
+
+    @Test
+    @DisplayName("Should evict a book updated in a transaction only once it commits")
+    public void evictAfterCommitTest() {
+
+	Book book = createValidBookWithId();
+	when(bookRepository.findByIsbn("1234")).thenReturn(Optional.of(book));
+	when(bookRepository.saveAndFlush(book)).thenReturn(book);
+	Cache cache = cacheManager.getCache(BookServiceImpl.BOOKS_BY_ISBN_CACHE);
+
+	bookService.findByIsbn("1234");
+
+	TransactionSynchronizationManager.initSynchronization();
+	try {
+	    bookService.update(book);
+
+	    assertThat(cache.get("1234")).isNotNull();
+
+	    TransactionSynchronizationManager.getSynchronizations()
+		    .forEach(TransactionSynchronization::afterCommit);
+	} finally {
+	    TransactionSynchronizationManager.clearSynchronization();
+	}
+
+	assertThat(cache.get("1234")).isNull();
+
+    }
+
+}
@@ -0,0 +1,102 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
+
+/**
+ * Many clients editing the same book at once: each one reads it and writes
+ * its own title back. Exactly the writes that were based on the current
+ * version go through, the others get a conflict instead of overwriting them.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class BookServiceConcurrencyTest {
+
+    private static final int CLIENTS = 16;
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    private Book book;
+
+    @BeforeEach
+    public void setUp() {
+	book = bookRepository.saveAndFlush(
+		Book.builder().author("Bruno").title("As aventuras").isbn("concurrency-1").build());
+    }
+
+    @AfterEach
+    public void tearDown() {
+	bookRepository.deleteById(book.getId());
+    }
+
+    @Test
+    @DisplayName("Should let only the updates based on the current version through")
+    public void concurrentUpdateTest() throws Exception {
+
+	// Arrange
+	ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+	CountDownLatch read = new CountDownLatch(CLIENTS);
+	List<Future<String>> results = new ArrayList<>(CLIENTS);
+
+	// Act
+	for (int i = 0; i < CLIENTS; i++) {
+	    String title = "Title " + i;
+	    results.add(executor.submit(() -> {
+		Book current = bookRepository.findById(book.getId()).get();
+		read.countDown();
+		read.await(10, TimeUnit.SECONDS);
+
+		current.setTitle(title);
+		try {
+		    bookService.update(current);
+		    return title;
+		} catch (OptimisticLockingFailureException ex) {
+		    return null;
+		}
+	    }));
+	}
+
+	List<String> written = new ArrayList<>();
+	for (Future<String> result : results) {
+	    String title = result.get(30, TimeUnit.SECONDS);
+	    if (title != null) {
+		written.add(title);
+	    }
+	}
+	executor.shutdown();
+
+	// Assert
+	Book saved = bookRepository.findById(book.getId()).get();
+
+	assertThat(written).hasSize(1);
+	assertThat(saved.getTitle()).isEqualTo(written.get(0));
+	assertThat(saved.getVersion()).isEqualTo(book.getVersion() + 1);
+    }
+
+}
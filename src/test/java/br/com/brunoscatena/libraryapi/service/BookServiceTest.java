@@ -6,8 +6,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -23,13 +27,18 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.data.domain.Example;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import br.com.brunoscatena.libraryapi.api.dto.BookDTO;
+import br.com.brunoscatena.libraryapi.api.dto.BookImportResultDTO;
 import br.com.brunoscatena.libraryapi.exception.BusinessException;
 import br.com.brunoscatena.libraryapi.model.entity.Book;
 import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
@@ -64,9 +73,7 @@ public class BookServiceTest {
 	// cenário
 	Book book = createValidBook();
 
-	when(bookRepository.existsByIsbn(anyString())).thenReturn(false);
-
-	when(bookRepository.save(book)).thenReturn(
+	when(bookRepository.saveAndFlush(book)).thenReturn(
 		Book.builder().id(1L).author("Bruno").title("As aventuras").isbn("1234").build());
 
 	// execução
@@ -86,21 +93,19 @@ public class BookServiceTest {
 
 	// cenário
 	Book book = createValidBook();
-	when(bookRepository.existsByIsbn(anyString())).thenReturn(true);
+	when(bookRepository.saveAndFlush(book)).thenThrow(new DataIntegrityViolationException(
+		"could not execute statement; constraint [UK_BOOK_ISBN_INDEX_2 ON PUBLIC.BOOK(ISBN)]"));
 
 	// execução
-	assertThrows(BusinessException.class, () -> {
+	BusinessException exception = assertThrows(BusinessException.class, () -> {
 	    bookService.save(book);
 	});
 
 	// verificação
-	// assertThat(exception)
-	// .isInstanceOf(BusinessException.class)
-	// .hasMessage("ISBN already being used");
+	assertThat(exception).hasMessage("ISBN already being used");
 
     }
 
-    @SuppressWarnings("unchecked")
     @Test
     @DisplayName("Should find book using properties")
     public void find() {
@@ -109,14 +114,16 @@ public class BookServiceTest {
 	Book book = createValidBook();
 
 	PageRequest pageReq = PageRequest.of(0, 10);
-	List<Book> books = Arrays.asList(book);
+	List<BookDTO> books = Arrays.asList(BookDTO.builder().title(book.getTitle())
+		.author(book.getAuthor()).isbn(book.getIsbn()).build());
 
-	Page<Book> page = new PageImpl<Book>(books, pageReq, 1);
+	Page<BookDTO> page = new PageImpl<BookDTO>(books, pageReq, 1);
 
-	when(bookRepository.findAll(any(Example.class), any(PageRequest.class))).thenReturn(page);
+	when(bookRepository.findDTOs(book.getTitle(), book.getAuthor(), book.getIsbn(), null, pageReq))
+		.thenReturn(page);
 
 	// Act
-	Page<Book> result = bookService.find(book, pageReq);
+	Page<BookDTO> result = (Page<BookDTO>) bookService.findDTOs(book, pageReq, CountMode.EXACT);
 
 	// Assert
 	assertThat(result.getTotalElements()).isEqualTo(1);
@@ -196,7 +203,7 @@ public class BookServiceTest {
     @DisplayName("Should update book")
     public void bookUpdateTest() {
 	Book book = createValidBookWithId();
-	when(bookRepository.save(book)).thenReturn(book);
+	when(bookRepository.saveAndFlush(book)).thenReturn(book);
 
 	Book updatedBook = bookService.update(book);
 
@@ -222,6 +229,7 @@ public class BookServiceTest {
 	});
 
 	verify(bookRepository, never()).save(book);
+	verify(bookRepository, never()).saveAndFlush(book);
 
     }
 
@@ -251,4 +259,113 @@ public class BookServiceTest {
 	verify(bookRepository, times(1)).findByIsbn(isbn);
 
     }
+
+    @Test
+    @DisplayName("Should find book without running a count query")
+    public void findWithoutCountTest() {
+
+	Book filter = Book.builder().title("aventuras").build();
+	PageRequest pageReq = PageRequest.of(0, 10);
+	Slice<BookDTO> slice = new SliceImpl<BookDTO>(
+		Arrays.asList(BookDTO.builder().id(1L).build()), pageReq, true);
+
+	when(bookRepository.findDTOSlice("aventuras", null, null, null, pageReq)).thenReturn(slice);
+
+	Slice<BookDTO> result = bookService.findDTOs(filter, pageReq, CountMode.NONE);
+
+	assertThat(result).isNotInstanceOf(Page.class);
+	assertThat(result.hasNext()).isTrue();
+	verify(bookRepository, never()).countByFilter(any(), any(), any(), any());
+	verify(bookRepository, never()).findDTOs(any(), any(), any(), any(), any(Pageable.class));
+
+    }
+
+    @Test
+    @DisplayName("Should reuse the cached count for the same filter")
+    public void findWithEstimatedCountTest() {
+
+	Book filter = Book.builder().title("aventuras").build();
+	PageRequest pageReq = PageRequest.of(0, 1);
+	Slice<BookDTO> slice = new SliceImpl<BookDTO>(
+		Arrays.asList(BookDTO.builder().id(1L).build()), pageReq, true);
+
+	when(bookRepository.findDTOSlice("aventuras", null, null, null, pageReq)).thenReturn(slice);
+	when(bookRepository.countByFilter(eq("aventuras"), isNull(), isNull(), isNull())).thenReturn(42L);
+
+	Slice<BookDTO> first = bookService.findDTOs(filter, pageReq, CountMode.ESTIMATED);
+	Slice<BookDTO> second = bookService.findDTOs(filter, pageReq, CountMode.ESTIMATED);
+
+	assertThat(((Page<BookDTO>) first).getTotalElements()).isEqualTo(42);
+	assertThat(((Page<BookDTO>) second).getTotalElements()).isEqualTo(42);
+	verify(bookRepository, times(1)).countByFilter(eq("aventuras"), isNull(), isNull(), isNull());
+
+    }
+
+    @Test
+    @DisplayName("Should not reuse the count of an unfiltered search for a search of the text null")
+    public void findWithEstimatedCountNullTextTest() {
+
+	PageRequest pageReq = PageRequest.of(0, 1);
+	Slice<BookDTO> slice = new SliceImpl<BookDTO>(
+		Arrays.asList(BookDTO.builder().id(1L).build()), pageReq, true);
+
+	when(bookRepository.findDTOSlice(any(), any(), any(), any(), eq(pageReq))).thenReturn(slice);
+	when(bookRepository.countByFilter(isNull(), isNull(), isNull(), isNull())).thenReturn(42L);
+	when(bookRepository.countByFilter(eq("null"), isNull(), isNull(), isNull())).thenReturn(3L);
+
+	Slice<BookDTO> unfiltered = bookService.findDTOs(new Book(), pageReq, CountMode.ESTIMATED);
+	Slice<BookDTO> nullText = bookService.findDTOs(Book.builder().title("null").build(), pageReq,
+		CountMode.ESTIMATED);
+
+	assertThat(((Page<BookDTO>) unfiltered).getTotalElements()).isEqualTo(42);
+	assertThat(((Page<BookDTO>) nullText).getTotalElements()).isEqualTo(3);
+
+    }
+
+    @Test
+    @DisplayName("Should import new books and report invalid, repeated and existing ISBNs")
+    public void importBooksTest() {
+	// Arrange
+	List<Book> books = Arrays.asList(
+		Book.builder().isbn("001").author("Fulano").title("A").build(),
+		Book.builder().isbn("002").author("Fulano").build(),
+		Book.builder().isbn("001").author("Fulano").title("B").build(),
+		Book.builder().isbn("003").author("Fulano").title("C").build(),
+		Book.builder().isbn("004").author("Fulano").title("D").build());
+
+	when(bookRepository.findExistingIsbns(anyCollection())).thenReturn(Arrays.asList("003"));
+
+	// Act
+	BookImportResultDTO result = bookService.importBooks(books);
+
+	// Assert
+	assertThat(result.getImported()).isEqualTo(2);
+	assertThat(result.getErrors()).extracting("row").containsExactly(1, 2, 3);
+	assertThat(result.getErrors()).extracting("message").containsExactly(
+		"Title, author and ISBN are required",
+		"Duplicated ISBN in import",
+		"ISBN already being used");
+
+	verify(bookRepository, times(1)).findExistingIsbns(anyCollection());
+	verify(bookRepository, times(1)).saveAll(argThat((List<Book> saved) -> saved.size() == 2
+		&& "001".equals(saved.get(0).getIsbn()) && "004".equals(saved.get(1).getIsbn())));
+    }
+
+    @Test
+    @DisplayName("Should translate an ISBN inserted concurrently during an import")
+    public void importBooksConcurrentIsbnTest() {
+	// Arrange
+	List<Book> books = Arrays.asList(Book.builder().isbn("001").author("Fulano").title("A").build());
+
+	doThrow(new DataIntegrityViolationException("Unique index or primary key violation: UK_BOOK_ISBN"))
+		.when(bookRepository).flush();
+
+	// Act
+	Throwable exception = assertThrows(BusinessException.class,
+		() -> bookService.importBooks(books));
+
+	// Assert
+	assertEquals("ISBN already being used", exception.getMessage());
+    }
+
 }
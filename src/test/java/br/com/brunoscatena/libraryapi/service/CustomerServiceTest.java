@@ -0,0 +1,129 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
+import br.com.brunoscatena.libraryapi.model.repository.CustomerRepository;
+import br.com.brunoscatena.libraryapi.service.impl.CustomerServiceImpl;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class CustomerServiceTest {
+
+    CustomerService customerService;
+
+    @MockBean
+    private CustomerRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+	this.customerService = new CustomerServiceImpl(repository);
+    }
+
+    @Test
+    @DisplayName("Should find an existing customer without creating it")
+    public void findOrCreateExistingTest() {
+
+	// Arrange
+	Customer customer = Customer.builder().id(1L).name("Bruno").build();
+	when(repository.findByName("Bruno")).thenReturn(Optional.of(customer));
+
+	// Act
+	Customer found = customerService.findOrCreate("Bruno");
+
+	// Assert
+	assertEquals(customer, found);
+	verify(repository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("Should create the customer of a first loan")
+    public void findOrCreateNewTest() {
+
+	// Arrange
+	when(repository.findByName("Maria")).thenReturn(Optional.empty());
+	when(repository.saveAndFlush(any(Customer.class)))
+		.thenReturn(Customer.builder().id(2L).name("Maria").build());
+
+	// Act
+	Customer created = customerService.findOrCreate("Maria");
+
+	// Assert
+	assertEquals(2L, created.getId());
+	verify(repository, times(1))
+		.saveAndFlush(argThat(customer -> "Maria".equals(customer.getName())));
+    }
+
+    @Test
+    @DisplayName("Should use the customer created meanwhile by a concurrent first loan")
+    public void findOrCreateRaceTest() {
+
+	// Arrange
+	when(repository.findByName("Maria")).thenReturn(Optional.empty(),
+		Optional.of(Customer.builder().id(3L).name("Maria").build()));
+	when(repository.saveAndFlush(any(Customer.class)))
+		.thenThrow(new DataIntegrityViolationException(
+			"could not execute statement; constraint [UK_CUSTOMER_NAME ON PUBLIC.CUSTOMER(NAME)]"));
+
+	// Act
+	Customer found = customerService.findOrCreate("Maria");
+
+	// Assert
+	assertEquals(3L, found.getId());
+    }
+
+    @Test
+    @DisplayName("Should not hide a failed insert of another constraint")
+    public void findOrCreateOtherViolationTest() {
+
+	// Arrange
+	when(repository.findByName("Maria")).thenReturn(Optional.empty());
+	when(repository.saveAndFlush(any(Customer.class)))
+		.thenThrow(new DataIntegrityViolationException("NULL not allowed for column \"NAME\""));
+
+	// Act & Assert
+	assertThrows(DataIntegrityViolationException.class,
+		() -> customerService.findOrCreate("Maria"));
+    }
+
+    @Test
+    @DisplayName("Should find the customers of a batch at once, creating only the new ones")
+    public void findOrCreateAllTest() {
+
+	// Arrange
+	when(repository.findByNameIn(any()))
+		.thenReturn(Arrays.asList(Customer.builder().id(1L).name("Bruno").build()));
+	when(repository.saveAndFlush(any(Customer.class)))
+		.thenReturn(Customer.builder().id(2L).name("Maria").build());
+
+	// Act
+	Map<String, Customer> customers = customerService
+		.findOrCreateAll(Arrays.asList("Bruno", "Maria"));
+
+	// Assert
+	assertEquals(1L, customers.get("Bruno").getId());
+	assertEquals(2L, customers.get("Maria").getId());
+	verify(repository, times(1)).saveAndFlush(any(Customer.class));
+    }
+
+}
@@ -0,0 +1,52 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.brunoscatena.libraryapi.api.dto.OverdueLoanDTO;
+import br.com.brunoscatena.libraryapi.service.impl.FileOverdueNotificationSink;
+
+public class FileOverdueNotificationSinkTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should append each overdue loan to the file as one JSON line")
+    public void sendTest() throws IOException {
+
+	// Arrange
+	ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+	Path file = directory.resolve("overdue.ndjson");
+	FileOverdueNotificationSink sink = new FileOverdueNotificationSink(file.toString(),
+		objectMapper);
+	OverdueLoanDTO first = new OverdueLoanDTO(1L, "Bruno", "123", LocalDate.of(2020, 1, 10));
+	OverdueLoanDTO second = new OverdueLoanDTO(2L, null, "456", LocalDate.of(2020, 1, 11));
+
+	// Act
+	sink.send(Arrays.asList(first));
+	sink.send(Collections.singletonList(second));
+
+	// Assert
+	List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+	assertEquals(2, lines.size());
+	assertEquals(first, objectMapper.readValue(lines.get(0), OverdueLoanDTO.class));
+	assertEquals(second, objectMapper.readValue(lines.get(1), OverdueLoanDTO.class));
+    }
+
+}
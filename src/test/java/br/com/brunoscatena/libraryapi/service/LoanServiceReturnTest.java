@@ -0,0 +1,103 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import br.com.brunoscatena.libraryapi.exception.BusinessException;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.entity.Loan;
+import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
+import br.com.brunoscatena.libraryapi.model.repository.CustomerRepository;
+import br.com.brunoscatena.libraryapi.model.repository.LoanRepository;
+
+/**
+ * A loan returned twice, the second time after the book went out again: the
+ * second return must not free the book of the open loan.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class LoanServiceReturnTest {
+
+    private static final String CUSTOMER = "Return test customer";
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    CustomerService customerService;
+
+    private Book book;
+
+    @BeforeEach
+    public void setUp() {
+	book = bookRepository.saveAndFlush(
+		Book.builder().author("Bruno").title("As aventuras").isbn("return-1").build());
+    }
+
+    @AfterEach
+    public void tearDown() {
+	loanRepository.deleteAll(
+		loanRepository.findAfterByBookId(book.getId(), 0L, PageRequest.of(0, 10)));
+	customerRepository.findIdByName(CUSTOMER).ifPresent(customerRepository::deleteById);
+	bookRepository.deleteById(book.getId());
+    }
+
+    private Loan checkout() {
+	return loanService.save(Loan.builder()
+		.book(book)
+		.customer(customerService.findOrCreate(CUSTOMER))
+		.loanDate(LocalDate.now())
+		.build());
+    }
+
+    private void returnLoan(Long id) {
+	Loan loan = loanService.findById(id).get();
+	loan.setReturned(true);
+	loanService.update(loan);
+    }
+
+    @Test
+    @DisplayName("Should keep the book loaned when an old loan of it is returned again")
+    public void returnTwiceTest() {
+
+	// Arrange
+	Loan first = checkout();
+	returnLoan(first.getId());
+	checkout();
+
+	// Act
+	BusinessException exception = assertThrows(BusinessException.class,
+		() -> returnLoan(first.getId()));
+
+	// Assert
+	assertEquals("Loan already returned", exception.getMessage());
+	assertTrue(bookRepository.findById(book.getId()).get().getLoaned());
+	BusinessException checkout = assertThrows(BusinessException.class, this::checkout);
+	assertEquals("Book already loaned", checkout.getMessage());
+    }
+
+}
@@ -4,15 +4,22 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -20,19 +27,29 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.function.Executable;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import br.com.brunoscatena.libraryapi.api.dto.LoanBatchItemDTO;
+import br.com.brunoscatena.libraryapi.api.dto.LoanDTO;
 import br.com.brunoscatena.libraryapi.api.dto.LoanFilterDTO;
 import br.com.brunoscatena.libraryapi.exception.BusinessException;
 import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
 import br.com.brunoscatena.libraryapi.model.entity.Loan;
+import br.com.brunoscatena.libraryapi.model.repository.BookRepository;
+import br.com.brunoscatena.libraryapi.model.repository.CustomerRepository;
 import br.com.brunoscatena.libraryapi.model.repository.LoanRepository;
 import br.com.brunoscatena.libraryapi.service.impl.LoanServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -41,23 +58,31 @@ public class LoanServiceTest {
     @MockBean
     private LoanRepository loanRepository;
 
+    @MockBean
+    private BookRepository bookRepository;
+
+    @MockBean
+    private CustomerRepository customerRepository;
+
     private LoanServiceImpl loanService;
 
+    private final Customer customer = Customer.builder().id(1L).name("Bruno").build();
+
     private Book createValidBook() {
 	return Book.builder().id(1L).isbn("123").build();
     }
 
     private Loan createValidLoanWithId(Book book) {
-	return Loan.builder().book(book).customer("Bruno").id(1L).loanDate(LocalDate.now()).build();
+	return Loan.builder().book(book).customer(customer).id(1L).loanDate(LocalDate.now()).build();
     }
 
     private Loan createValidLoan(Book book) {
-	return Loan.builder().book(book).customer("Bruno").loanDate(LocalDate.now()).build();
+	return Loan.builder().book(book).customer(customer).loanDate(LocalDate.now()).build();
     }
 
     @BeforeEach
     public void setUp() {
-	this.loanService = new LoanServiceImpl(loanRepository);
+	this.loanService = new LoanServiceImpl(loanRepository, bookRepository, customerRepository);
     }
 
     @Test
@@ -69,8 +94,8 @@ public class LoanServiceTest {
 	Loan newLoan = createValidLoan(book);
 	Loan savedLoan = createValidLoanWithId(book);
 
-	when(loanRepository.existsByBookIdAndNotReturned(book)).thenReturn(false);
-	when(loanRepository.save(any(Loan.class))).thenReturn(savedLoan);
+	when(bookRepository.markLoaned(book.getId())).thenReturn(1);
+	when(loanRepository.saveAndFlush(any(Loan.class))).thenReturn(savedLoan);
 
 	// Act
 	Loan returnedLoan = loanService.save(newLoan);
@@ -82,8 +107,53 @@ public class LoanServiceTest {
 	assertEquals(returnedLoan.getLoanDate(), savedLoan.getLoanDate());
 	assertEquals(returnedLoan.getReturned(), savedLoan.getReturned());
 
-	verify(loanRepository, times(1)).save(newLoan);
+	verify(loanRepository, times(1)).saveAndFlush(newLoan);
+	verify(customerRepository, never()).saveAndFlush(any());
+
+    }
+
+    @Test
+    @DisplayName("Should throw error when the book is already flagged as loaned")
+    public void saveFlaggedBookTest() {
+
+	// Arrange
+	Book book = createValidBook();
+	Loan newLoan = createValidLoan(book);
+
+	when(bookRepository.markLoaned(book.getId())).thenReturn(0);
+
+	// Act
+	Executable saveExecutable = () -> {
+	    loanService.save(newLoan);
+	};
+
+	// Assert
+	BusinessException exception = assertThrows(BusinessException.class, saveExecutable);
 
+	assertEquals("Book already loaned", exception.getMessage());
+	verify(loanRepository, never()).saveAndFlush(any(Loan.class));
+    }
+
+    @Test
+    @DisplayName("Should count the loans rejected because the book is already loaned")
+    public void saveFlaggedBookRejectionCountTest() {
+
+	// Arrange
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	LoanServiceImpl service = new LoanServiceImpl(loanRepository, bookRepository,
+		customerRepository, meterRegistry);
+	Book book = createValidBook();
+
+	when(bookRepository.markLoaned(book.getId())).thenReturn(0);
+
+	// Act
+	assertThrows(BusinessException.class, () -> service.save(createValidLoan(book)));
+
+	// Assert
+	assertEquals(1.0, meterRegistry.get("library.rejections")
+		.tag("reason", "already_loaned")
+		.counter()
+		.count());
     }
 
     @Test
@@ -94,7 +164,9 @@ public class LoanServiceTest {
 	Book book = createValidBook();
 	Loan newLoan = createValidLoan(book);
 
-	when(loanRepository.existsByBookIdAndNotReturned(book)).thenReturn(true);
+	when(bookRepository.markLoaned(book.getId())).thenReturn(1);
+	when(loanRepository.saveAndFlush(newLoan)).thenThrow(new DataIntegrityViolationException(
+		"could not execute statement; constraint [UK_LOAN_ACTIVE_BOOK ON PUBLIC.LOAN(ACTIVE_BOOK_ID)]"));
 
 	// Act
 	Executable saveExecutable = () -> {
@@ -102,9 +174,10 @@ public class LoanServiceTest {
 	};
 
 	// Assert
-	assertThrows(BusinessException.class, saveExecutable);
+	BusinessException exception = assertThrows(BusinessException.class, saveExecutable);
 
-	verify(loanRepository, times(1)).existsByBookIdAndNotReturned(book);
+	assertEquals("Book already loaned", exception.getMessage());
+	verify(loanRepository, times(1)).saveAndFlush(newLoan);
     }
 
     @Test
@@ -137,14 +210,59 @@ public class LoanServiceTest {
 	Loan loan = createValidLoanWithId(book);
 	loan.setReturned(true);
 
-	when(loanRepository.save(loan)).thenReturn(loan);
+	when(loanRepository.saveAndFlush(loan)).thenReturn(loan);
 
 	// Act
 	Loan updatedLoan = loanService.update(loan);
 
 	// Assert
 	assertEquals(updatedLoan.getReturned(), loan.getReturned());
-	verify(loanRepository, times(1)).save(loan);
+	verify(loanRepository, times(1)).saveAndFlush(loan);
+	verify(bookRepository, times(1)).updateLoaned(Collections.singleton(book.getId()), false);
+
+    }
+
+    @Test
+    @DisplayName("Should reject returning a loan that was already returned")
+    public void updateAlreadyReturnedLoanTest() {
+
+	// Arrange
+	Book book = createValidBook();
+	Loan loan = createValidLoanWithId(book);
+	loan.setReturned(true);
+
+	when(loanRepository.findReturnedById(loan.getId())).thenReturn(Optional.of(true));
+
+	// Act
+	BusinessException exception = assertThrows(BusinessException.class,
+		() -> loanService.update(loan));
+
+	// Assert
+	assertEquals("Loan already returned", exception.getMessage());
+	verify(loanRepository, never()).saveAndFlush(any(Loan.class));
+	verify(bookRepository, never()).updateLoaned(any(), anyBoolean());
+
+    }
+
+    @Test
+    @DisplayName("Should take the book back when a returned loan is reopened")
+    public void updateReopenLoanTest() {
+
+	// Arrange
+	Book book = createValidBook();
+	Loan loan = createValidLoanWithId(book);
+	loan.setReturned(false);
+
+	when(loanRepository.findReturnedById(loan.getId())).thenReturn(Optional.of(true));
+	when(bookRepository.markLoaned(book.getId())).thenReturn(0);
+
+	// Act
+	BusinessException exception = assertThrows(BusinessException.class,
+		() -> loanService.update(loan));
+
+	// Assert
+	assertEquals("Book already loaned", exception.getMessage());
+	verify(loanRepository, never()).saveAndFlush(any(Loan.class));
 
     }
 
@@ -152,26 +270,194 @@ public class LoanServiceTest {
     @DisplayName("Should filter loans using properties")
     public void findLoanTest() {
 
+	// Arrange
+	LoanFilterDTO dto = LoanFilterDTO.builder().customer("Bruno").isbn("123").build();
+	Pageable pageRequest = PageRequest.of(1, 2);
+	PageRequest head = PageRequest.of(0, 4, Sort.by("id"));
+
+	when(bookRepository.findIdByIsbn("123")).thenReturn(Optional.of(1L));
+	when(customerRepository.findIdByName("Bruno")).thenReturn(Optional.of(1L));
+	when(loanRepository.findDTOsByBookId(1L, head))
+		.thenReturn(new PageImpl<LoanDTO>(loansWithIds(11L, 13L), head, 2));
+	when(loanRepository.findDTOsByCustomerId(1L, head))
+		.thenReturn(new PageImpl<LoanDTO>(loansWithIds(11L, 12L, 14L, 15L), head, 6));
+	when(loanRepository.countByBookIdAndCustomerId(1L, 1L)).thenReturn(1L);
+
+	// Act
+	Page<LoanDTO> result = loanService.findDTOs(dto, pageRequest);
+
+	// Assert
+	assertEquals(Arrays.asList(13L, 14L), result.getContent()
+		.stream()
+		.map(LoanDTO::getId)
+		.collect(Collectors.toList()));
+	assertEquals(7, result.getTotalElements());
+	assertEquals(pageRequest, result.getPageable());
+
+    }
+
+    @Test
+    @DisplayName("Should reject a search by isbn and customer sorted by anything but id")
+    public void findLoanMergedSortTest() {
+
+	// Arrange
 	LoanFilterDTO dto = LoanFilterDTO.builder().customer("Bruno").isbn("123").build();
+	Pageable pageRequest = PageRequest.of(0, 10, Sort.by("dueDate"));
+
+	when(bookRepository.findIdByIsbn("123")).thenReturn(Optional.of(1L));
+	when(customerRepository.findIdByName("Bruno")).thenReturn(Optional.of(1L));
+
+	// Act
+	Executable search = () -> loanService.findDTOs(dto, pageRequest);
+
+	// Assert
+	assertThrows(BusinessException.class, search);
+	verify(loanRepository, never()).findDTOsByBookId(any(), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Should reject a search by isbn and customer past the deepest merged page")
+    public void findLoanMergedOffsetTest() {
+
+	// Arrange
+	LoanFilterDTO dto = LoanFilterDTO.builder().customer("Bruno").isbn("123").build();
+	Pageable pageRequest = PageRequest.of(Integer.MAX_VALUE / 10, 10, Sort.by("id"));
+
+	when(bookRepository.findIdByIsbn("123")).thenReturn(Optional.of(1L));
+	when(customerRepository.findIdByName("Bruno")).thenReturn(Optional.of(1L));
+
+	// Act
+	Executable search = () -> loanService.findDTOs(dto, pageRequest);
+
+	// Assert
+	assertThrows(BusinessException.class, search);
+	verify(loanRepository, never()).findDTOsByBookId(any(), any(Pageable.class));
+    }
+
+    private List<LoanDTO> loansWithIds(Long... ids) {
+	return Arrays.stream(ids)
+		.map(id -> LoanDTO.builder().id(id).build())
+		.collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Should search loans by book only when no customer filter is given")
+    public void findLoanByIsbnTest() {
+
+	// Arrange
+	LoanFilterDTO dto = LoanFilterDTO.builder().isbn("123").build();
 	Pageable pageRequest = PageRequest.of(0, 10);
+
+	when(bookRepository.findIdByIsbn("123")).thenReturn(Optional.of(1L));
+	when(loanRepository.findDTOsByBookId(1L, pageRequest)).thenReturn(Page.empty(pageRequest));
+
+	// Act
+	loanService.findDTOs(dto, pageRequest);
+
+	// Assert
+	verify(loanRepository, times(1)).findDTOsByBookId(1L, pageRequest);
+	verify(customerRepository, never()).findIdByName(anyString());
+	verify(loanRepository, never()).findDTOsByCustomerId(any(), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Should return no loans for an unknown isbn and customer")
+    public void findLoanUnknownKeysTest() {
+
+	// Arrange
+	LoanFilterDTO dto = LoanFilterDTO.builder().customer("Nobody").isbn("000").build();
+
+	when(bookRepository.findIdByIsbn("000")).thenReturn(Optional.empty());
+	when(customerRepository.findIdByName("Nobody")).thenReturn(Optional.empty());
+
+	// Act
+	Page<LoanDTO> result = loanService.findDTOs(dto, PageRequest.of(0, 10));
+
+	// Assert
+	assertTrue(result.isEmpty());
+	verify(loanRepository, never()).findAllDTOs(any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Should merge the book and customer keyset pages by id")
+    public void findAfterMergeTest() {
+
+	// Arrange
+	LoanFilterDTO dto = LoanFilterDTO.builder().customer("Bruno").isbn("123").build();
 	Book book = createValidBook();
-	Loan loan = createValidLoanWithId(book);
+	Loan first = createValidLoan(book);
+	first.setId(11L);
+	Loan second = createValidLoan(book);
+	second.setId(12L);
+	Loan third = createValidLoan(book);
+	third.setId(13L);
+
+	when(bookRepository.findIdByIsbn("123")).thenReturn(Optional.of(1L));
+	when(customerRepository.findIdByName("Bruno")).thenReturn(Optional.of(1L));
+	when(loanRepository.findAfterByBookId(eq(1L), eq(10L), any(Pageable.class)))
+		.thenReturn(new SliceImpl<Loan>(Arrays.asList(first, third)));
+	when(loanRepository.findAfterByCustomerId(eq(1L), eq(10L), any(Pageable.class)))
+		.thenReturn(new SliceImpl<Loan>(Arrays.asList(first, second)));
+
+	// Act
+	Slice<Loan> slice = loanService.findAfter(dto, 10L, 2);
 
-	List<Loan> loans = Arrays.asList(loan);
-	Page<Loan> pageLoan = new PageImpl<Loan>(loans, pageRequest, loans.size());
+	// Assert
+	assertEquals(Arrays.asList(first, second), slice.getContent());
+	assertTrue(slice.hasNext());
+    }
 
-	when(loanRepository.findByBookIsbnOrCustomer(anyString(), anyString(), any(Pageable.class)))
-		.thenReturn(pageLoan);
+    @Test
+    @DisplayName("Should save a batch of loans skipping taken and repeated books")
+    public void saveAllTest() {
+
+	// Arrange
+	Book loanedBook = Book.builder().id(1L).isbn("123").loaned(true).build();
+	Book freeBook = Book.builder().id(2L).isbn("456").loaned(false).build();
+	List<Loan> loans = Arrays.asList(createValidLoan(loanedBook), createValidLoan(freeBook),
+		createValidLoan(freeBook));
 
-	Page<Loan> returnedPageLoan = loanService.find(dto, pageRequest);
+	when(bookRepository.findAllByIdForUpdate(new HashSet<>(Arrays.asList(1L, 2L))))
+		.thenReturn(Arrays.asList(loanedBook, freeBook));
 
-	assertEquals(returnedPageLoan.getNumberOfElements(), loans.size());
-	assertEquals(returnedPageLoan.getContent(), pageLoan.getContent());
-	assertEquals(returnedPageLoan.getPageable().getPageSize(),
-		pageLoan.getPageable().getPageSize());
-	assertEquals(returnedPageLoan.getPageable().getPageNumber(),
-		pageLoan.getPageable().getPageNumber());
+	// Act
+	List<LoanBatchItemDTO> items = loanService.saveAll(loans);
+
+	// Assert
+	assertEquals(3, items.size());
+	assertEquals("Book already loaned", items.get(0).getError());
+	assertEquals(null, items.get(1).getError());
+	assertEquals("Book already loaned", items.get(2).getError());
+
+	verify(bookRepository, times(1)).findAllByIdForUpdate(any());
+	verify(bookRepository, times(1)).updateLoaned(Collections.singleton(2L), true);
+	verify(bookRepository, never()).markLoaned(any());
+	verify(loanRepository, times(1)).saveAll(argThat((List<Loan> saved) -> saved.size() == 1
+		&& saved.get(0).getBook() == freeBook));
+	verify(loanRepository, times(1)).flush();
+    }
 
+    @Test
+    @DisplayName("Should return a batch of loans reporting unknown and returned ones")
+    public void returnAllTest() {
+
+	// Arrange
+	Loan open = createValidLoanWithId(createValidBook());
+	Loan returned = Loan.builder().id(2L).book(createValidBook()).returned(true).build();
+
+	when(loanRepository.findAllWithBookById(any())).thenReturn(Arrays.asList(open, returned));
+
+	// Act
+	List<LoanBatchItemDTO> items = loanService.returnAll(Arrays.asList(1L, 2L, 3L));
+
+	// Assert
+	assertTrue(open.getReturned());
+	assertEquals(null, items.get(0).getError());
+	assertEquals("123", items.get(0).getIsbn());
+	assertEquals("Loan already returned", items.get(1).getError());
+	assertEquals("Loan not found", items.get(2).getError());
+	assertEquals(3L, items.get(2).getId());
+	verify(bookRepository, times(1)).updateLoaned(eq(Arrays.asList(1L)), eq(false));
     }
 
 }
@@ -0,0 +1,101 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import br.com.brunoscatena.libraryapi.api.dto.OverdueLoanDTO;
+import br.com.brunoscatena.libraryapi.model.repository.LoanRepository;
+import br.com.brunoscatena.libraryapi.service.impl.OverdueLoanScanner;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class OverdueLoanScannerTest {
+
+    @MockBean
+    private LoanRepository loanRepository;
+
+    @MockBean
+    private OverdueNotificationSink sink;
+
+    private MeterRegistry meterRegistry;
+
+    private OverdueLoanScanner scanner;
+
+    @BeforeEach
+    public void setUp() {
+	this.meterRegistry = new SimpleMeterRegistry();
+	this.scanner = new OverdueLoanScanner(loanRepository, sink, meterRegistry, 2);
+    }
+
+    @Test
+    @DisplayName("Should send overdue loans chunk by chunk, continuing after the last one")
+    public void sweepTest() {
+
+	// Arrange
+	LocalDate today = LocalDate.of(2020, 1, 20);
+	LocalDate dueDate = LocalDate.of(2020, 1, 10);
+	OverdueLoanDTO first = new OverdueLoanDTO(1L, "Bruno", "001", dueDate);
+	OverdueLoanDTO second = new OverdueLoanDTO(5L, "Rafael", "002", dueDate);
+	OverdueLoanDTO third = new OverdueLoanDTO(3L, "Artur", "003", dueDate.plusDays(1));
+	Pageable chunk = PageRequest.of(0, 2);
+
+	when(loanRepository.findOverdueAfter(eq(today), any(LocalDate.class), eq(0L), eq(chunk)))
+		.thenReturn(new SliceImpl<>(Arrays.asList(first, second), chunk, true));
+	when(loanRepository.findOverdueAfter(today, dueDate, 5L, chunk))
+		.thenReturn(new SliceImpl<>(Collections.singletonList(third), chunk, false));
+
+	// Act
+	int rows = scanner.sweep(today);
+
+	// Assert
+	assertEquals(3, rows);
+	verify(sink, times(1)).send(Arrays.asList(first, second));
+	verify(sink, times(1)).send(Collections.singletonList(third));
+	verify(loanRepository, times(2)).findOverdueAfter(any(), any(), any(), any());
+	assertEquals(1, meterRegistry.get("library.loans.overdue.sweep").timer().count());
+	assertEquals(3.0, meterRegistry.get("library.loans.overdue.rows").summary().totalAmount());
+    }
+
+    @Test
+    @DisplayName("Should not notify anyone when no loan is overdue")
+    public void sweepNothingOverdueTest() {
+
+	// Arrange
+	LocalDate today = LocalDate.of(2020, 1, 20);
+	Pageable chunk = PageRequest.of(0, 2);
+
+	when(loanRepository.findOverdueAfter(eq(today), any(LocalDate.class), eq(0L), eq(chunk)))
+		.thenReturn(new SliceImpl<>(Collections.emptyList(), chunk, false));
+
+	// Act
+	int rows = scanner.sweep(today);
+
+	// Assert
+	assertEquals(0, rows);
+	verify(sink, never()).send(any());
+	assertEquals(1, meterRegistry.get("library.loans.overdue.sweep").timer().count());
+    }
+
+}
@@ -0,0 +1,133 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import br.com.brunoscatena.libraryapi.exception.BusinessException;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.repository.reactive.ReactiveBookRepository;
+import br.com.brunoscatena.libraryapi.model.row.BookRow;
+import br.com.brunoscatena.libraryapi.service.impl.ReactiveBookServiceImpl;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class ReactiveBookServiceTest {
+
+    private static final int PAGE_SIZE = 100;
+
+    @MockBean
+    private ReactiveBookRepository repository;
+
+    @MockBean
+    private BookSearchService bookSearchService;
+
+    private ReactiveBookService reactiveBookService;
+
+    @BeforeEach
+    public void setUp() {
+	this.reactiveBookService = new ReactiveBookServiceImpl(repository, bookSearchService);
+    }
+
+    private Flux<BookRow> createRows(long firstId, int count) {
+	return Flux.range(0, count)
+		.map(i -> BookRow.builder()
+			.id(firstId + i)
+			.isbn(String.valueOf(firstId + i))
+			.author("Fulano")
+			.title("A")
+			.loaned(false)
+			.version(0L)
+			.build());
+    }
+
+    private void mockPageAfter(long lastId, Flux<BookRow> rows) {
+	when(repository.findAfter(any(), any(), any(), any(), eq(lastId), anyInt())).thenReturn(rows);
+    }
+
+    @Test
+    @DisplayName("Should read at most one page ahead of the subscriber")
+    public void findOnDemandTest() {
+
+	// Arrange
+	mockPageAfter(0L, createRows(1, PAGE_SIZE));
+	mockPageAfter(100L, createRows(101, PAGE_SIZE));
+	mockPageAfter(200L, createRows(201, 1));
+
+	// Act / Assert
+	StepVerifier.create(reactiveBookService.find(new Book()), 1)
+		.expectNextMatches(book -> book.getId() == 1L)
+		.then(() -> verify(repository, never())
+			.findAfter(any(), any(), any(), any(), eq(200L), anyInt()))
+		.thenRequest(Long.MAX_VALUE)
+		.expectNextCount(2 * PAGE_SIZE - 1)
+		.expectNextMatches(book -> book.getId() == 201L)
+		.verifyComplete();
+
+	verify(repository, times(3)).findAfter(any(), any(), any(), any(), anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should reject a duplicated ISBN with the same rule as the blocking service")
+    public void saveDuplicatedIsbnTest() {
+
+	// Arrange
+	Book book = Book.builder().isbn("123").author("Fulano").title("A").build();
+	when(repository.nextId()).thenReturn(Mono.just(1L));
+	when(repository.insert(1L, "A", "Fulano", "123")).thenReturn(Mono.error(
+		new DataIntegrityViolationException("Unique index or primary key violation: UK_BOOK_ISBN")));
+
+	// Act / Assert
+	StepVerifier.create(reactiveBookService.save(book))
+		.expectErrorMatches(ex -> ex instanceof BusinessException
+			&& "ISBN already being used".equals(ex.getMessage()))
+		.verify();
+	verify(bookSearchService, never()).index(any());
+    }
+
+    @Test
+    @DisplayName("Should save a new book with an id from the sequence and index it")
+    public void saveTest() {
+
+	// Arrange
+	Book book = Book.builder().isbn("123").author("Fulano").title("A").build();
+	when(repository.nextId()).thenReturn(Mono.just(7L));
+	when(repository.insert(7L, "A", "Fulano", "123")).thenReturn(Mono.just(1));
+
+	// Act / Assert
+	StepVerifier.create(reactiveBookService.save(book))
+		.expectNextMatches(saved -> saved.getId() == 7L && !saved.getLoaned()
+			&& saved.getVersion() == 0L)
+		.verifyComplete();
+	verify(bookSearchService).index(any(Book.class));
+    }
+
+    @Test
+    @DisplayName("Should complete empty when the book does not exist")
+    public void findByIdNotFoundTest() {
+
+	// Arrange
+	when(repository.findById(1L)).thenReturn(Mono.empty());
+
+	// Act / Assert
+	StepVerifier.create(reactiveBookService.findById(1L)).verifyComplete();
+    }
+
+}
@@ -0,0 +1,183 @@
+package br.com.brunoscatena.libraryapi.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import br.com.brunoscatena.libraryapi.exception.BusinessException;
+import br.com.brunoscatena.libraryapi.model.entity.Book;
+import br.com.brunoscatena.libraryapi.model.entity.Customer;
+import br.com.brunoscatena.libraryapi.model.entity.Loan;
+import br.com.brunoscatena.libraryapi.model.repository.reactive.ReactiveBookRepository;
+import br.com.brunoscatena.libraryapi.model.repository.reactive.ReactiveCustomerRepository;
+import br.com.brunoscatena.libraryapi.model.repository.reactive.ReactiveLoanRepository;
+import br.com.brunoscatena.libraryapi.model.row.CustomerRow;
+import br.com.brunoscatena.libraryapi.service.impl.ReactiveLoanServiceImpl;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class ReactiveLoanServiceTest {
+
+    @MockBean
+    private ReactiveLoanRepository loanRepository;
+
+    @MockBean
+    private ReactiveBookRepository bookRepository;
+
+    @MockBean
+    private ReactiveCustomerRepository customerRepository;
+
+    @MockBean
+    private TransactionalOperator transactionalOperator;
+
+    private ReactiveLoanService reactiveLoanService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+	when(transactionalOperator.transactional(any(Mono.class)))
+		.thenAnswer(invocation -> invocation.getArgument(0));
+	this.reactiveLoanService = new ReactiveLoanServiceImpl(loanRepository, bookRepository,
+		customerRepository, transactionalOperator);
+    }
+
+    private Loan createLoan() {
+	return Loan.builder()
+		.book(Book.builder().id(1L).isbn("123").build())
+		.customer(Customer.builder().name("Fulano").build())
+		.loanDate(LocalDate.of(2020, 1, 10))
+		.build();
+    }
+
+    @Test
+    @DisplayName("Should save a loan for an existing customer, due after the loan period")
+    public void saveTest() {
+
+	// Arrange
+	when(customerRepository.findByName("Fulano"))
+		.thenReturn(Mono.just(CustomerRow.builder().id(5L).name("Fulano").build()));
+	when(bookRepository.markLoaned(1L)).thenReturn(Mono.just(1));
+	when(loanRepository.nextId()).thenReturn(Mono.just(10L));
+	when(loanRepository.insert(10L, 1L, 5L, LocalDate.of(2020, 1, 10), LocalDate.of(2020, 1, 24)))
+		.thenReturn(Mono.just(1));
+
+	// Act / Assert
+	StepVerifier.create(reactiveLoanService.save(createLoan()))
+		.expectNextMatches(loan -> loan.getId() == 10L && loan.getCustomer().getId() == 5L)
+		.verifyComplete();
+	verify(customerRepository, never()).insert(any());
+    }
+
+    @Test
+    @DisplayName("Should reject a loan of a book already loaned with the same rule as the blocking service")
+    public void saveAlreadyLoanedTest() {
+
+	// Arrange
+	when(customerRepository.findByName("Fulano"))
+		.thenReturn(Mono.just(CustomerRow.builder().id(5L).name("Fulano").build()));
+	when(bookRepository.markLoaned(1L)).thenReturn(Mono.just(0));
+	when(loanRepository.nextId()).thenReturn(Mono.just(10L));
+
+	// Act / Assert
+	StepVerifier.create(reactiveLoanService.save(createLoan()))
+		.expectErrorMatches(ex -> ex instanceof BusinessException
+			&& "Book already loaned".equals(ex.getMessage()))
+		.verify();
+	verify(loanRepository, never()).insert(anyLong(), anyLong(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should create the customer of their first loan")
+    public void saveNewCustomerTest() {
+
+	// Arrange
+	when(customerRepository.findByName("Fulano")).thenReturn(Mono.empty(),
+		Mono.just(CustomerRow.builder().id(6L).name("Fulano").build()));
+	when(customerRepository.insert("Fulano")).thenReturn(Mono.just(1));
+	when(bookRepository.markLoaned(1L)).thenReturn(Mono.just(1));
+	when(loanRepository.nextId()).thenReturn(Mono.just(10L));
+	when(loanRepository.insert(eq(10L), eq(1L), eq(6L), any(), any())).thenReturn(Mono.just(1));
+
+	// Act / Assert
+	StepVerifier.create(reactiveLoanService.save(createLoan()))
+		.expectNextMatches(loan -> loan.getCustomer().getId() == 6L)
+		.verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should map the open loan index violation to the already loaned error")
+    public void saveActiveLoanViolationTest() {
+
+	// Arrange
+	when(customerRepository.findByName("Fulano"))
+		.thenReturn(Mono.just(CustomerRow.builder().id(5L).name("Fulano").build()));
+	when(bookRepository.markLoaned(1L)).thenReturn(Mono.just(1));
+	when(loanRepository.nextId()).thenReturn(Mono.just(10L));
+	when(loanRepository.insert(eq(10L), eq(1L), eq(5L), any(), any())).thenReturn(Mono.error(
+		new DataIntegrityViolationException("Unique index or primary key violation: UK_LOAN_ACTIVE_BOOK")));
+
+	// Act / Assert
+	StepVerifier.create(reactiveLoanService.save(createLoan()))
+		.expectErrorMatches(ex -> ex instanceof BusinessException
+			&& "Book already loaned".equals(ex.getMessage()))
+		.verify();
+    }
+
+    @Test
+    @DisplayName("Should reject returning a loan twice")
+    public void returnTwiceTest() {
+
+	// Arrange
+	Loan loan = createLoan();
+	loan.setId(10L);
+	loan.setVersion(1L);
+	loan.setReturned(true);
+	when(loanRepository.findReturnedById(10L)).thenReturn(Mono.just(true));
+	when(loanRepository.updateReturned(any(), any(), any(), any())).thenReturn(Mono.just(1));
+
+	// Act / Assert
+	StepVerifier.create(reactiveLoanService.update(loan))
+		.expectErrorMatches(ex -> ex instanceof BusinessException
+			&& "Loan already returned".equals(ex.getMessage()))
+		.verify();
+	verify(bookRepository, never()).updateLoaned(anyLong(), eq(false));
+    }
+
+    @Test
+    @DisplayName("Should reject returning a loan changed since it was read")
+    public void returnStaleVersionTest() {
+
+	// Arrange
+	Loan loan = createLoan();
+	loan.setId(10L);
+	loan.setVersion(1L);
+	loan.setReturned(true);
+	when(loanRepository.findReturnedById(10L)).thenReturn(Mono.just(false));
+	when(loanRepository.updateReturned(eq(10L), eq(1L), eq(true), any())).thenReturn(Mono.just(0));
+
+	// Act / Assert
+	StepVerifier.create(reactiveLoanService.update(loan))
+		.expectError(OptimisticLockingFailureException.class)
+		.verify();
+	verify(bookRepository, never()).updateLoaned(anyLong(), eq(false));
+    }
+
+}